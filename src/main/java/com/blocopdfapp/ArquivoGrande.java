@@ -0,0 +1,303 @@
+package com.blocopdfapp;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Arquivo de texto muito grande lido sob demanda por leituras posicionais do FileChannel.
+ * O arquivo é dividido em blocos de até LINHAS_POR_BLOCO linhas (ou BYTES_MAX_BLOCO bytes,
+ * para linhas enormes), cujos inícios são indexados em segundo plano. Só os blocos
+ * exibidos são decodificados; os blocos editados ficam numa tabela de peças (bloco -> texto)
+ * sobreposta ao arquivo, e o restante continua sendo lido do disco. Assim a memória depende
+ * do trecho exibido e das edições, não do tamanho do arquivo.
+ * A quebra em linhas procura o byte '\n', então a codificação precisa ser compatível com
+ * ASCII (UTF-8, ISO-8859-1, windows-1252...); UTF-16 não é suportado.
+ * O arquivo não é mapeado em memória (FileChannel.map): no Windows, um arquivo com
+ * mapeamentos ativos não pode ser substituído, e o Java não tem como desfazer um mapeamento
+ * antes do coletor de lixo. A gravação sobre o próprio arquivo aberto fecha o canal antes de
+ * mover o arquivo salvo para o lugar dele.
+ * As quebras de linha voltam ao arquivo como estavam: a área de texto entrega os blocos
+ * editados só com '\n', e eles são gravados com a quebra encontrada na indexação (\r\n ou \n).
+ */
+public class ArquivoGrande implements Closeable {
+
+    public static final int LINHAS_POR_BLOCO = 1000;
+    private static final long BYTES_MAX_BLOCO = 1L << 20;              // Limite de um bloco com linhas enormes
+    private static final int TAMANHO_SEGMENTO = 8 * 1024 * 1024;       // Trecho lido por vez na indexação
+    private static final long INTERVALO_AVISO_MS = 200;                 // Frequência dos avisos de progresso do índice
+
+    private final Path caminho;
+    private final Charset charset;
+    private FileChannel canal;                  // Reaberto se a gravação sobre o próprio arquivo falhar
+    private final long tamanho;
+
+    // Índice esparso: início (em bytes) e número da linha de cada fronteira de bloco.
+    // O bloco i vai de inicios[i] até inicios[i + 1].
+    private long[] inicios = new long[1024];
+    private long[] linhas = new long[1024];
+    private int fronteiras = 1;                 // A fronteira 0 (byte 0, linha 0) já existe
+    private volatile boolean indiceCompleto = false;
+    private volatile String quebraDeLinha = "\n";  // A primeira encontrada no arquivo
+    private volatile IOException erroIndice;
+    private volatile Runnable onIndiceAtualizado;
+
+    // Tabela de peças: blocos editados, com o texto atual de cada um
+    private final TreeMap<Integer, String> blocosEditados = new TreeMap<>();
+
+    /**
+     * Abre o arquivo e começa a indexação em segundo plano
+     */
+    public ArquivoGrande(Path caminho, Charset charset) throws IOException {
+        this.caminho = caminho;
+        this.charset = charset;
+        this.canal = FileChannel.open(caminho, StandardOpenOption.READ);
+        this.tamanho = canal.size();
+
+        Thread indexador = new Thread(this::indexar, "indexador-arquivo-grande");
+        indexador.setDaemon(true);
+        indexador.setPriority(Thread.MIN_PRIORITY);
+        indexador.start();
+    }
+
+    /**
+     * Define o callback chamado (na thread de indexação) quando o índice avança ou termina
+     */
+    public void setOnIndiceAtualizado(Runnable onIndiceAtualizado) { this.onIndiceAtualizado = onIndiceAtualizado; }
+
+    public Path getCaminho() { return caminho; }
+    public Charset getCharset() { return charset; }
+    public long getTamanho() { return tamanho; }
+    public boolean isIndiceCompleto() { return indiceCompleto; }
+    public IOException getErroIndice() { return erroIndice; }
+
+    /**
+     * Indica se algum bloco foi editado
+     */
+    public synchronized boolean isModificado() {
+        return !blocosEditados.isEmpty();
+    }
+
+    /**
+     * Número de blocos já indexados (todos, quando o índice estiver completo)
+     */
+    public synchronized int getBlocosDisponiveis() {
+        return fronteiras - 1;
+    }
+
+    /**
+     * Número de linhas conhecidas até agora, já considerando as edições
+     */
+    public synchronized long getTotalLinhas() {
+        return primeiraLinha(fronteiras - 1) + 1;
+    }
+
+    /**
+     * Texto atual do bloco: o editado, se houver, ou o decodificado do arquivo
+     */
+    public synchronized String lerBloco(int bloco) throws IOException {
+        String editado = blocosEditados.get(bloco);
+        if (editado != null) return editado;
+        long inicio = inicios[bloco];
+        long fim = inicios[bloco + 1];
+        if (fim == inicio) return "";
+        ByteBuffer trecho = ByteBuffer.allocate((int) (fim - inicio));  // Até BYTES_MAX_BLOCO (ou mil linhas)
+        while (trecho.hasRemaining()) {
+            if (canal.read(trecho, inicio + trecho.position()) < 0) throw new IOException("O arquivo foi truncado.");
+        }
+        trecho.flip();
+        return charset.decode(trecho).toString();
+    }
+
+    /**
+     * Substitui o texto dos blocos a partir de blocoInicial (um texto por bloco)
+     */
+    public synchronized void substituirBlocos(int blocoInicial, List<String> textos) {
+        for (int i = 0; i < textos.size(); i++) {
+            blocosEditados.put(blocoInicial + i, textos.get(i));
+        }
+    }
+
+    /**
+     * Número de quebras de linha ('\n') do bloco, considerando a edição
+     */
+    public synchronized long quebrasDoBloco(int bloco) {
+        String editado = blocosEditados.get(bloco);
+        return editado != null ? contarQuebras(editado) : linhas[bloco + 1] - linhas[bloco];
+    }
+
+    /**
+     * Número (a partir de 0) da linha em que o bloco começa, considerando as edições anteriores a ele
+     */
+    public synchronized long primeiraLinha(int bloco) {
+        long linha = linhas[bloco];
+        for (Map.Entry<Integer, String> editado : blocosEditados.headMap(bloco).entrySet()) {
+            int b = editado.getKey();
+            linha += contarQuebras(editado.getValue()) - (linhas[b + 1] - linhas[b]);
+        }
+        return linha;
+    }
+
+    /**
+     * Bloco que contém a linha informada (busca binária sobre o índice)
+     */
+    public synchronized int blocoDaLinha(long linha) {
+        int baixo = 0, alto = fronteiras - 2;
+        while (baixo < alto) {
+            int meio = (baixo + alto + 1) >>> 1;
+            if (primeiraLinha(meio) <= linha) baixo = meio;
+            else alto = meio - 1;
+        }
+        return Math.max(0, baixo);
+    }
+
+    /**
+     * Grava o arquivo completo (blocos editados codificados, os demais copiados do original)
+     * num arquivo temporário e o move atomicamente para o destino. O índice precisa estar completo.
+     * Se o destino for o próprio arquivo aberto, o canal é fechado antes da movimentação
+     * (o arquivo deve ser reaberto depois); se ela falhar, o canal é reaberto.
+     */
+    public void salvar(Path destino) throws IOException {
+        if (!indiceCompleto) throw new IOException("O índice do arquivo ainda está sendo construído.");
+        Path temporario = GravadorTexto.criarTemporario(destino);
+        try {
+            try (FileChannel saida = FileChannel.open(temporario, StandardOpenOption.WRITE)) {
+                int blocos = getBlocosDisponiveis();
+                for (int bloco = 0; bloco < blocos; bloco++) {
+                    String editado;
+                    long inicio, fim;
+                    synchronized (this) {
+                        editado = blocosEditados.get(bloco);
+                        inicio = inicios[bloco];
+                        fim = inicios[bloco + 1];
+                    }
+                    if (editado != null) {
+                        if (!quebraDeLinha.equals("\n")) editado = editado.replace("\n", quebraDeLinha);
+                        ByteBuffer bytes = charset.encode(editado);
+                        while (bytes.hasRemaining()) saida.write(bytes);
+                    } else {
+                        long posicao = inicio;
+                        while (posicao < fim) posicao += canal.transferTo(posicao, fim - posicao, saida);
+                    }
+                }
+                saida.force(true);
+            }
+            if (Files.exists(destino) && Files.isSameFile(destino, caminho)) {
+                substituirArquivoAberto(temporario, destino);
+            } else {
+                Files.move(temporario, destino, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temporario);
+        }
+    }
+
+    /**
+     * Fecha o canal e move o arquivo salvo sobre o original
+     */
+    private synchronized void substituirArquivoAberto(Path temporario, Path destino) throws IOException {
+        canal.close();
+        try {
+            Files.move(temporario, destino, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException | RuntimeException e) {
+            canal = FileChannel.open(caminho, StandardOpenOption.READ);  // O original continua intacto
+            throw e;
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        canal.close();
+    }
+
+    /**
+     * Percorre o arquivo em segmentos, registrando as fronteiras dos blocos e a quebra de linha usada
+     */
+    private void indexar() {
+        try {
+            long linha = 0;
+            long linhasNoBloco = 0;
+            long inicioBloco = 0;
+            byte anterior = 0;
+            long ultimoAviso = System.currentTimeMillis();
+            boolean quebraConhecida = false;
+            ByteBuffer segmento = ByteBuffer.allocateDirect(TAMANHO_SEGMENTO);
+
+            for (long base = 0; base < tamanho; base += segmento.limit()) {
+                if (!canal.isOpen()) return;
+                segmento.clear();
+                if (canal.read(segmento, base) < 0) break;  // Arquivo truncado durante a indexação
+                segmento.flip();
+                int comprimento = segmento.limit();
+                for (int i = 0; i < comprimento; i++) {
+                    byte b = segmento.get(i);
+                    long posicao = base + i;
+                    // Linha enorme: quebra o bloco no início de um caractere (fora de \r\n e de sequências UTF-8)
+                    if (posicao - inicioBloco >= BYTES_MAX_BLOCO && (b & 0xC0) != 0x80 && anterior != '\r') {
+                        adicionarFronteira(posicao, linha);
+                        inicioBloco = posicao;
+                        linhasNoBloco = 0;
+                    }
+                    if (!quebraConhecida && (b == '\n' || anterior == '\r')) {
+                        quebraDeLinha = b != '\n' ? "\r" : anterior == '\r' ? "\r\n" : "\n";
+                        quebraConhecida = true;
+                    }
+                    if (b == '\n') {
+                        linha++;
+                        if (++linhasNoBloco == LINHAS_POR_BLOCO) {
+                            adicionarFronteira(posicao + 1, linha);
+                            inicioBloco = posicao + 1;
+                            linhasNoBloco = 0;
+                        }
+                    }
+                    anterior = b;
+                }
+                if (System.currentTimeMillis() - ultimoAviso >= INTERVALO_AVISO_MS) {
+                    ultimoAviso = System.currentTimeMillis();
+                    avisar();
+                }
+            }
+            synchronized (this) {
+                // Último bloco (parcial); um arquivo vazio tem um único bloco vazio
+                if (inicioBloco < tamanho || fronteiras == 1) adicionarFronteira(tamanho, linha);
+            }
+        } catch (IOException e) {
+            erroIndice = e;
+        }
+        indiceCompleto = true;
+        avisar();
+    }
+
+    private synchronized void adicionarFronteira(long inicio, long linha) {
+        if (fronteiras == inicios.length) {
+            inicios = Arrays.copyOf(inicios, fronteiras * 2);
+            linhas = Arrays.copyOf(linhas, fronteiras * 2);
+        }
+        inicios[fronteiras] = inicio;
+        linhas[fronteiras] = linha;
+        fronteiras++;
+    }
+
+    private void avisar() {
+        Runnable callback = onIndiceAtualizado;
+        if (callback != null) callback.run();
+    }
+
+    static long contarQuebras(String texto) {
+        long quebras = 0;
+        for (int i = 0; i < texto.length(); i++) {
+            if (texto.charAt(i) == '\n') quebras++;
+        }
+        return quebras;
+    }
+}
@@ -1,18 +1,42 @@
 package com.blocopdfapp;
 
 import javafx.application.Platform;
+import javafx.concurrent.Task;
 import javafx.geometry.Insets;
+import javafx.geometry.Pos;
 import javafx.scene.Node;
 import javafx.scene.control.*;
+import javafx.scene.input.KeyCode;
+import javafx.scene.input.KeyCombination;
 import javafx.scene.layout.BorderPane;
+import javafx.scene.layout.HBox;
 import javafx.scene.layout.VBox;
 import javafx.stage.FileChooser;
 import org.fxmisc.flowless.VirtualizedScrollPane;
 import org.fxmisc.richtext.InlineCssTextArea;
+import org.fxmisc.richtext.model.StyleSpans;
 import org.fxmisc.richtext.model.TwoDimensional;
+import org.reactfx.EventStreams;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
 import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
 
 /**
  * Componente do editor de texto com funcionalidades avançadas
@@ -26,6 +50,52 @@ public class BlocoDeNotas {
     private final MenuBar menuBar;           // Barra de menus
     private final ToolBar toolBar;           // Barra de ferramentas
     private File currentFile;                // Arquivo atual em edição
+    private Charset charsetArquivo = StandardCharsets.UTF_8;  // Codificação do arquivo atual
+
+    // Carregamento e gravação de arquivos em segundo plano
+    private final HBox barraCarregamento;
+    private final ProgressBar progressoCarregamento = new ProgressBar();
+    private final Label statusCarregamento = new Label();
+    private CarregadorTexto carregamento;
+    private Task<?> tarefaNaBarra;           // Tarefa cujo progresso está na barra inferior
+    private final ExecutorService gravacoes = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "gravador-texto");
+        thread.setDaemon(true);
+        return thread;
+    });  // Uma gravação por vez, na ordem em que foram pedidas
+    private final ExecutorService exportacoes = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "exportador-pdf");
+        thread.setDaemon(true);
+        return thread;
+    });  // Uma exportação por vez: as fontes do RegistroFontes são compartilhadas entre elas
+
+    // Modo de arquivo grande: arquivo lido sob demanda, exibido em janelas de blocos
+    private static final int BLOCOS_POR_JANELA = 3;
+    private final HBox barraArquivoGrande;
+    private final Label statusArquivoGrande = new Label();
+    private ArquivoGrande arquivoGrande;
+    private int blocoJanela = 0;                    // Primeiro bloco exibido
+    private long[] quebrasNaJanela = new long[0];   // Quebras de linha de cada bloco exibido
+    private long linhaPendente = 0;                 // Linha a exibir quando o índice alcançá-la
+    private boolean janelaModificada = false;
+    private boolean trocandoJanela = false;
+    private boolean salvandoArquivoGrande = false;  // A janela não muda enquanto o arquivo é gravado
+
+    // Diário de edições para recuperar o documento após uma queda (null se indisponível)
+    private DiarioEdicoes diario;
+
+    // Histórico de desfazer com memória limitada (orçamento fixo)
+    private static final long LIMITE_HISTORICO_DESFAZER = 32L * 1024 * 1024;
+    private HistoricoDesfazer historico;
+
+    // Localizar e substituir
+    private BuscaTexto busca;
+    private final HBox barraBusca;
+    private final TextField campoBusca = new TextField();
+    private final TextField campoSubstituir = new TextField();
+    private final CheckBox chkExpressaoRegular = new CheckBox("Expressão regular");
+    private final CheckBox chkMaiusculas = new CheckBox("Diferenciar maiúsculas");
+    private final Label statusBusca = new Label();
     
     // Callbacks para comunicação com a interface principal
     private Runnable onAbrirPDF;
@@ -44,6 +114,9 @@ public class BlocoDeNotas {
     private ToggleButton btnEsquerda, btnCentralizado, btnDireita, btnJustificado;
     private ComboBox<String> comboMarcaTexto;
 
+    // Espera após o último movimento do cursor antes de atualizar a barra de ferramentas
+    private static final Duration INTERVALO_ATUALIZACAO_TOOLBAR = Duration.ofMillis(30);
+
     /**
      * Construtor - inicializa todos os componentes
      */
@@ -53,24 +126,39 @@ public class BlocoDeNotas {
         this.textArea = new InlineCssTextArea();
         this.menuBar = criarMenuBar();
         this.toolBar = criarToolBar();
+        this.barraCarregamento = criarBarraCarregamento();
+        this.barraArquivoGrande = criarBarraArquivoGrande();
+        this.barraBusca = criarBarraBusca();
 
         // Configuração do componente
         configurarOuvintesMouse();
+        configurarJanelaArquivoGrande();
         configurarAreaTexto();
         configurarFormatoPadrao();
+        configurarDiario();
         
         // Montagem do layout
-        VBox topContainer = new VBox(menuBar, toolBar);
+        VBox topContainer = new VBox(menuBar, toolBar, barraBusca);
         root.setTop(topContainer);
         root.setCenter(new VirtualizedScrollPane<>(textArea));  // Área de texto com scroll
+        root.setBottom(new VBox(barraCarregamento, barraArquivoGrande));
 
         // Aplica tema escuro por padrão na área de texto
         isDarkMode = true;
         aplicarTemaTexto(isDarkMode);
+
+        // Oferece recuperar o documento de uma sessão encerrada sem salvar
+        Platform.runLater(this::oferecerRecuperacao);
     }
 
+    private static final String DETECTAR_CODIFICACAO = "Detectar automaticamente";
+    private static final FileChooser.ExtensionFilter FILTRO_FORMATO_RICO =
+            new FileChooser.ExtensionFilter("Documento com Formatação", "*" + FormatoRico.EXTENSAO);
+
     // Estado do tema da área de texto
     private boolean isDarkMode = true;
+    private static final String TEMA_ESCURO_CSS = "/dark-mode.css";
+    private static final String TEMA_CLARO_CSS = "/light-mode.css";
 
     // Métodos setters para os callbacks
     public void setOnAbrirPDF(Runnable onAbrirPDF) { this.onAbrirPDF = onAbrirPDF; }
@@ -83,6 +171,22 @@ public class BlocoDeNotas {
     private void configurarAreaTexto() {
         textArea.setWrapText(true);              // Quebra de linha automática
         textArea.setParagraphGraphicFactory(null); // Remove gráficos de parágrafo padrão
+        historico = new HistoricoDesfazer(textArea, LIMITE_HISTORICO_DESFAZER);
+        busca = new BuscaTexto(textArea);
+        busca.setAoAtualizar(this::atualizarStatusBusca);
+    }
+
+    /**
+     * Mostra o uso de memória do histórico de desfazer
+     */
+    private void mostrarDiagnostico() {
+        Alert alert = new Alert(Alert.AlertType.INFORMATION);
+        alert.setTitle("Diagnóstico");
+        alert.setHeaderText("Histórico de desfazer");
+        alert.setContentText(String.format("Entradas: %d%nMemória aproximada: %.1f KB de %.1f MB%nEntradas antigas descartadas: %d",
+                historico.getEntradas(), historico.getBytesUsados() / 1024.0,
+                historico.getLimiteBytes() / (1024.0 * 1024.0), historico.getEntradasDescartadas()));
+        alert.showAndWait();
     }
 
     /**
@@ -95,18 +199,109 @@ public class BlocoDeNotas {
     }
 
     /**
-     * Configura ouvintes para atualizar a barra de ferramentas
+     * Registra cada alteração de texto ou estilo no diário de edições. Sem diário
+     * (diretório inacessível), o editor funciona normalmente, só sem recuperação.
+     */
+    private void configurarDiario() {
+        try {
+            diario = new DiarioEdicoes(DiarioEdicoes.diretorioPadrao(), () -> textArea.getContent().snapshot());
+        } catch (IOException e) {
+            Platform.runLater(() -> mostrarErro("Recuperação indisponível",
+                    "Não foi possível criar o diário de edições (" + e.getMessage() + "). O editor funciona "
+                    + "normalmente, mas documentos não salvos não poderão ser recuperados se ele for fechado."));
+            return;
+        }
+        diario.iniciarDoDocumento(null, charsetArquivo);
+        textArea.richChanges().subscribe(diario::registrar);
+    }
+
+    /**
+     * Oferece, do mais recente ao mais antigo, os documentos deixados no diário por sessões
+     * encerradas sem salvar. O editor mostra um documento por vez: ao recuperar um, os que
+     * faltam ficam para a próxima abertura; "Depois" mantém o diário e passa ao seguinte.
+     */
+    private void oferecerRecuperacao() {
+        if (diario == null) return;
+        List<Path> orfaos = DiarioEdicoes.diariosOrfaos(DiarioEdicoes.diretorioPadrao());
+
+        ButtonType recuperar = new ButtonType("Recuperar", ButtonBar.ButtonData.YES);
+        ButtonType descartar = new ButtonType("Descartar", ButtonBar.ButtonData.NO);
+        ButtonType depois = new ButtonType("Depois", ButtonBar.ButtonData.CANCEL_CLOSE);
+        for (int i = 0; i < orfaos.size(); i++) {
+            Path orfao = orfaos.get(i);
+            Path arquivo = DiarioEdicoes.arquivoAssociado(orfao);
+            String documento = arquivo != null ? "o documento \"" + arquivo.getFileName() + "\"" : "um documento sem nome";
+            String contagem = orfaos.size() > 1 ? " (" + (i + 1) + " de " + orfaos.size() + ")" : "";
+            Alert alert = new Alert(Alert.AlertType.CONFIRMATION,
+                    "O editor foi fechado sem salvar " + documento + contagem + ". Deseja recuperá-lo?",
+                    recuperar, descartar, depois);
+            alert.setTitle("Recuperar documento");
+            alert.setHeaderText(null);
+            Optional<ButtonType> resposta = alert.showAndWait();
+            if (resposta.isPresent() && resposta.get() == recuperar) {
+                if (recuperarDiario(orfao)) return;
+            } else if (resposta.isPresent() && resposta.get() == descartar) {
+                DiarioEdicoes.descartar(orfao);
+            }
+        }
+    }
+
+    /**
+     * Reconstrói o documento reaplicando o diário; o resultado fica como documento não salvo
+     * associado ao arquivo original. Um diário que não pode ser reproduzido (por exemplo,
+     * porque o arquivo base mudou) é separado, para não ser oferecido de novo a cada abertura.
+     */
+    private boolean recuperarDiario(Path orfao) {
+        cancelarCarregamento();
+        fecharArquivoGrande();
+        diario.suspender();  // A reprodução não é registrada de novo
+        boolean recuperado = false;
+        try {
+            DiarioEdicoes.Recuperacao recuperacao = DiarioEdicoes.reproduzir(orfao, textArea);
+            currentFile = recuperacao.getCaminho() != null ? recuperacao.getCaminho().toFile() : null;
+            charsetArquivo = recuperacao.getCharset();
+            textArea.getUndoManager().forgetHistory();
+            textArea.moveTo(0);
+            DiarioEdicoes.descartar(orfao);
+            recuperado = true;
+        } catch (IOException | RuntimeException e) {
+            textArea.clear();
+            currentFile = null;
+            Path separado = DiarioEdicoes.separar(orfao);
+            mostrarErro("Recuperar documento", "Não foi possível recuperar o documento: " + e.getMessage()
+                    + (separado != null ? "\nO diário foi guardado em " + separado + "." : "\nO diário foi descartado."));
+        }
+        diario.iniciarDoDocumento(currentFile != null ? currentFile.toPath() : null, charsetArquivo);
+        return recuperado;
+    }
+
+    /**
+     * Encerra as tarefas do editor; o diário só permanece se houver edições não salvas
+     */
+    public void encerrar() {
+        busca.encerrar();
+        cancelarCarregamento();
+        gravacoes.shutdown();  // Aguarda as gravações em andamento (o arquivo original só é trocado no fim)
+        try {
+            gravacoes.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        fecharArquivoGrande();
+        if (diario != null) diario.encerrar();
+    }
+
+    /**
+     * Configura ouvintes para atualizar a barra de ferramentas.
+     * Movimentos do cursor e mudanças de seleção em sequência (shift+setas, arrastar)
+     * são agrupados numa única atualização, feita quando a sequência termina.
      */
     private void configurarOuvintesMouse() {
-        // Atualiza quando o cursor se move
-        textArea.caretPositionProperty().addListener((obs, oldVal, newVal) -> {
-            Platform.runLater(this::atualizarEstadoToolbar);
-        });
-        
-        // Atualiza quando a seleção muda
-        textArea.selectedTextProperty().addListener((obs, oldVal, newVal) -> {
-            Platform.runLater(this::atualizarEstadoToolbar);
-        });
+        EventStreams.merge(
+                EventStreams.invalidationsOf(textArea.caretPositionProperty()),
+                EventStreams.invalidationsOf(textArea.selectionProperty()))
+            .successionEnds(INTERVALO_ATUALIZACAO_TOOLBAR)
+            .subscribe(ignorado -> atualizarEstadoToolbar());
     }
 
     /**
@@ -121,6 +316,8 @@ public class BlocoDeNotas {
         // Operações com texto
         MenuItem novoItem = new MenuItem("Novo Documento");
         MenuItem abrirItem = new MenuItem("Abrir Texto");
+        MenuItem abrirCodificacaoItem = new MenuItem("Abrir Texto com Codificação...");
+        MenuItem abrirGrandeItem = new MenuItem("Abrir Arquivo Grande...");
         MenuItem salvarItem = new MenuItem("Salvar");
         MenuItem salvarComoItem = new MenuItem("Salvar Como");
         
@@ -132,7 +329,9 @@ public class BlocoDeNotas {
 
         // Configuração dos eventos dos itens do menu
         novoItem.setOnAction(e -> novoDocumento());
-        abrirItem.setOnAction(e -> abrirArquivo());
+        abrirItem.setOnAction(e -> abrirArquivo(null));
+        abrirCodificacaoItem.setOnAction(e -> escolherCodificacao().ifPresent(this::abrirArquivo));
+        abrirGrandeItem.setOnAction(e -> abrirArquivoGrande());
         salvarItem.setOnAction(e -> salvarArquivo());
         salvarComoItem.setOnAction(e -> salvarComoArquivo());
         
@@ -143,7 +342,7 @@ public class BlocoDeNotas {
         sairItem.setOnAction(e -> Platform.exit());
 
         // Adiciona itens ao menu principal
-        menuArquivo.getItems().addAll(novoItem, abrirItem, new SeparatorMenuItem(),
+        menuArquivo.getItems().addAll(novoItem, abrirItem, abrirCodificacaoItem, abrirGrandeItem, new SeparatorMenuItem(),
                                    salvarItem, salvarComoItem, new SeparatorMenuItem(),
                                    abrirPDFItem, exportarPDFItem, new SeparatorMenuItem(), sairItem);
 
@@ -154,15 +353,22 @@ public class BlocoDeNotas {
         MenuItem recortarItem = new MenuItem("Recortar");
         MenuItem copiarItem = new MenuItem("Copiar");
         MenuItem colarItem = new MenuItem("Colar");
+        MenuItem localizarItem = new MenuItem("Localizar...");
+        MenuItem substituirItem = new MenuItem("Substituir...");
+        localizarItem.setAccelerator(KeyCombination.keyCombination("Shortcut+F"));
+        substituirItem.setAccelerator(KeyCombination.keyCombination("Shortcut+H"));
 
         desfazerItem.setOnAction(e -> textArea.undo());
         refazerItem.setOnAction(e -> textArea.redo());
         recortarItem.setOnAction(e -> textArea.cut());
         copiarItem.setOnAction(e -> textArea.copy());
         colarItem.setOnAction(e -> textArea.paste());
+        localizarItem.setOnAction(e -> mostrarBarraBusca(campoBusca));
+        substituirItem.setOnAction(e -> mostrarBarraBusca(campoSubstituir));
 
         menuEditar.getItems().addAll(desfazerItem, refazerItem, new SeparatorMenuItem(),
-                                     recortarItem, copiarItem, colarItem);
+                                     recortarItem, copiarItem, colarItem, new SeparatorMenuItem(),
+                                     localizarItem, substituirItem);
                                      
         // Menu Visualizar - configurações de visualização
         Menu menuVisualizar = new Menu("Visualizar");
@@ -216,9 +422,11 @@ public class BlocoDeNotas {
         
         // Menu Ajuda
         Menu menuAjuda = new Menu("Ajuda");
+        MenuItem diagnosticoItem = new MenuItem("Diagnóstico");
+        diagnosticoItem.setOnAction(e -> mostrarDiagnostico());
         MenuItem sobreItem = new MenuItem("Sobre");
         sobreItem.setOnAction(e -> { if (onSobre != null) onSobre.run(); });
-        menuAjuda.getItems().add(sobreItem);
+        menuAjuda.getItems().addAll(diagnosticoItem, sobreItem);
         
         // Adiciona todos os menus à barra
         menuBar.getMenus().addAll(menuArquivo, menuEditar, menuFormatar, menuVisualizar, menuAjuda);
@@ -260,17 +468,17 @@ public class BlocoDeNotas {
         btnNegrito = new ToggleButton("N");
         btnNegrito.setStyle("-fx-font-weight: bold;");
         btnNegrito.setTooltip(new Tooltip("Negrito"));
-        btnNegrito.setOnAction(e -> toggleEstiloTexto("-fx-font-weight", "bold", btnNegrito));
+        btnNegrito.setOnAction(e -> toggleEstiloTexto(EstiloTexto::isNegrito, EstiloTexto::comNegrito));
 
         btnItalico = new ToggleButton("I");
         btnItalico.setStyle("-fx-font-style: italic;");
         btnItalico.setTooltip(new Tooltip("Itálico"));
-        btnItalico.setOnAction(e -> toggleEstiloTexto("-fx-font-style", "italic", btnItalico));
+        btnItalico.setOnAction(e -> toggleEstiloTexto(EstiloTexto::isItalico, EstiloTexto::comItalico));
 
         btnSublinhado = new ToggleButton("S");
         btnSublinhado.setStyle("-fx-underline: true;");
         btnSublinhado.setTooltip(new Tooltip("Sublinhado"));
-        btnSublinhado.setOnAction(e -> toggleEstiloTexto("-fx-underline", "true", btnSublinhado));
+        btnSublinhado.setOnAction(e -> toggleEstiloTexto(EstiloTexto::isSublinhado, EstiloTexto::comSublinhado));
 
         // Grupo de botões para alinhamento (apenas um selecionado por vez)
         grupoAlinhamento = new ToggleGroup();
@@ -324,66 +532,41 @@ public class BlocoDeNotas {
     }
 
     /**
-     * Aplica estilo de fonte ou tamanho ao texto selecionado
+     * Aplica a transformação a cada trecho de estilo (style span) da seleção e grava
+     * o resultado numa única alteração: o custo acompanha o número de trechos, não de caracteres,
+     * e a operação gera uma só entrada no histórico de desfazer
      */
-    private void aplicarEstiloFonteOuTamanho(String propriedade, String valor) {
+    private void aplicarEstiloNaSelecao(UnaryOperator<EstiloTexto> transformacao) {
         int start = textArea.getSelection().getStart();
         int end = textArea.getSelection().getEnd();
-        
-        if (start == end) {
-            String estiloAtual = textArea.getStyle();
-            String novoEstilo = atualizarEstiloCSS(estiloAtual, propriedade, valor);
-            textArea.setStyle(novoEstilo);
-            return;
-        }
-        
-        for (int i = start; i < end; i++) {
-            String estiloAtual = textArea.getStyleOfChar(i);
-            String novoEstilo = atualizarEstiloCSS(estiloAtual, propriedade, valor);
-            textArea.setStyle(i, i + 1, novoEstilo);
-        }
-        atualizarEstadoToolbar();
-    }
+        if (start >= end) return;
 
-    private String atualizarEstiloCSS(String estiloAtual, String propriedade, String valor) {
-        String regex = propriedade + ":\\s*[^;]*;?";
-        String estiloLimpo = estiloAtual.replaceAll(regex, "").trim();
-        String novaPropriedade = propriedade + ": " + valor + ";";
-        
-        if (estiloLimpo.isEmpty()) {
-            return novaPropriedade;
-        } else {
-            return estiloLimpo + " " + novaPropriedade;
-        }
+        StyleSpans<String> trechos = textArea.getStyleSpans(start, end);
+        textArea.setStyleSpans(start, trechos.mapStyles(css -> transformacao.apply(EstiloTexto.de(css)).toCss()));
+        atualizarEstadoToolbar();
     }
 
     /**
      * Atualiza o estilo padrão da área de texto para novo texto
      */
-    private void atualizarEstiloPadrao(String propriedade, String valor) {
-        String estiloAtual = textArea.getStyle();
-        // Remove a propriedade existente
-        String estiloLimpo = estiloAtual.replaceAll(propriedade + ":\\s*[^;]*;?", "").trim();
-        // Adiciona a nova propriedade
-        String novaPropriedade = propriedade + ": " + valor + ";";
-        String novoEstilo = estiloLimpo.isEmpty() ? novaPropriedade : estiloLimpo + " " + novaPropriedade;
-        textArea.setStyle(novoEstilo);
+    private void atualizarEstiloPadrao(UnaryOperator<EstiloTexto> transformacao) {
+        textArea.setStyle(transformacao.apply(EstiloTexto.de(textArea.getStyle())).toCss());
     }
 
     private void aplicarFonte(String fonte) {
         // Aplica à seleção existente
-        aplicarEstiloFonteOuTamanho("-fx-font-family", "'" + fonte + "'");
+        aplicarEstiloNaSelecao(estilo -> estilo.comFonte(fonte));
         // Define como padrão para novo texto
-        atualizarEstiloPadrao("-fx-font-family", "'" + fonte + "'");
+        atualizarEstiloPadrao(estilo -> estilo.comFonte(fonte));
         // Atualiza a ComboBox
         comboFontes.setValue(fonte);
     }
 
     private void aplicarTamanhoFonte(int tamanho) {
         // Aplica à seleção existente
-        aplicarEstiloFonteOuTamanho("-fx-font-size", tamanho + "pt");
+        aplicarEstiloNaSelecao(estilo -> estilo.comTamanho(tamanho));
         // Define como padrão para novo texto
-        atualizarEstiloPadrao("-fx-font-size", tamanho + "pt");
+        atualizarEstiloPadrao(estilo -> estilo.comTamanho(tamanho));
         // Atualiza a ComboBox
         comboTamanhos.setValue(tamanho);
     }
@@ -402,54 +585,23 @@ public class BlocoDeNotas {
         }
     }
 
-    private void toggleEstiloTexto(String propriedade, String valor, ToggleButton botao) {
+    /**
+     * Liga ou desliga um estilo na seleção: se algum trecho já o tiver, remove de todos
+     */
+    private void toggleEstiloTexto(Predicate<EstiloTexto> temEstilo, BiFunction<EstiloTexto, Boolean, EstiloTexto> definir) {
         int start = textArea.getSelection().getStart();
         int end = textArea.getSelection().getEnd();
         
         if (start >= end) return;
         
-        boolean hasStyle = false;
-        for (int i = start; i < end; i++) {
-            if (textArea.getStyleOfChar(i).contains(propriedade)) {
-                hasStyle = true;
-                break;
-            }
-        }
-
-        String acao = hasStyle ? "remover" : "adicionar";
-        
-        for (int i = start; i < end; i++) {
-            String estiloAtual = textArea.getStyleOfChar(i).toString();
-            String novoEstilo;
-            
-            if (acao.equals("remover")) {
-                novoEstilo = estiloAtual.replaceAll(propriedade + ":\\s*[^;]*;?", "").trim();
-            } else {
-                novoEstilo = estiloAtual + " " + propriedade + ": " + valor + ";";
-            }
-            
-            textArea.setStyle(i, i + 1, novoEstilo.trim());
-        }
-        atualizarEstadoToolbar();
+        boolean hasStyle = textArea.getStyleSpans(start, end).styleStream()
+                .anyMatch(css -> temEstilo.test(EstiloTexto.de(css)));
+        aplicarEstiloNaSelecao(estilo -> definir.apply(estilo, !hasStyle));
     }
 
     private void aplicarMarcaTexto(String cor) {
-        int start = textArea.getSelection().getStart();
-        int end = textArea.getSelection().getEnd();
-        
-        if (start >= end) return;
-        
-        String estilo = cor.equals("Remover") ? "" : "-rtfx-background-color: " + obterCorHex(cor) + ";";
-        
-        for (int i = start; i < end; i++) {
-            String estiloAtual = textArea.getStyleOfChar(i).toString();
-            String estiloLimpo = estiloAtual.replaceAll("-rtfx-background-color:\\s*#[A-Fa-f0-9]{6};?", "").trim();
-            String novoEstilo = estilo.isEmpty() ? estiloLimpo : 
-                (estiloLimpo.isEmpty() ? estilo : estiloLimpo + " " + estilo);
-            
-            textArea.setStyle(i, i + 1, novoEstilo);
-        }
-        atualizarEstadoToolbar();
+        String marca = cor.equals("Remover") ? null : obterCorHex(cor);
+        aplicarEstiloNaSelecao(estilo -> estilo.comMarcaTexto(marca));
     }
 
     private String obterCorHex(String cor) {
@@ -463,21 +615,23 @@ public class BlocoDeNotas {
         }
     }
 
+    /**
+     * Reflete o estilo do cursor na barra de ferramentas, alterando apenas os controles
+     * cujo estado mudou
+     */
     private void atualizarEstadoToolbar() {
         int start = textArea.getSelection().getStart();
+        EstiloTexto estilo = EstiloTexto.PADRAO;
         if (textArea.getLength() > 0 && start < textArea.getLength()) {
             int pos = Math.min(start, textArea.getLength() - 1);
-            String estilo = textArea.getStyleOfChar(pos).toString();
-            btnNegrito.setSelected(estilo.contains("-fx-font-weight: bold"));
-            btnItalico.setSelected(estilo.contains("-fx-font-style: italic"));
-            btnSublinhado.setSelected(estilo.contains("-fx-underline: true"));
-        } else {
-            btnNegrito.setSelected(false);
-            btnItalico.setSelected(false);
-            btnSublinhado.setSelected(false);
+            estilo = EstiloTexto.de(textArea.getStyleOfChar(pos));
         }
+        definirSelecionado(btnNegrito, estilo.isNegrito());
+        definirSelecionado(btnItalico, estilo.isItalico());
+        definirSelecionado(btnSublinhado, estilo.isSublinhado());
 
         boolean disableControls = textArea.getLength() == 0;
+        if (comboFontes.isDisable() == disableControls) return;  // Todos mudam juntos
         comboFontes.setDisable(disableControls);
         comboTamanhos.setDisable(disableControls);
         btnNegrito.setDisable(disableControls);
@@ -490,6 +644,10 @@ public class BlocoDeNotas {
         comboMarcaTexto.setDisable(disableControls);
     }
 
+    private static void definirSelecionado(ToggleButton botao, boolean selecionado) {
+        if (botao.isSelected() != selecionado) botao.setSelected(selecionado);
+    }
+
     private void atualizarEstadoAlinhamento(String alinhamento) {
         btnEsquerda.setSelected("left".equals(alinhamento));
         btnCentralizado.setSelected("center".equals(alinhamento));
@@ -497,33 +655,266 @@ public class BlocoDeNotas {
         btnJustificado.setSelected("justify".equals(alinhamento));
     }
 
+    /**
+     * Cria a barra inferior com o progresso do carregamento (oculta quando não há carregamento)
+     */
+    private HBox criarBarraCarregamento() {
+        Button btnCancelar = new Button("Cancelar");
+        btnCancelar.setOnAction(e -> {
+            if (tarefaNaBarra != null) tarefaNaBarra.cancel();
+        });
+        progressoCarregamento.setPrefWidth(200);
+
+        HBox barra = new HBox(10, statusCarregamento, progressoCarregamento, btnCancelar);
+        barra.setAlignment(Pos.CENTER_LEFT);
+        barra.setPadding(new Insets(4, 8, 4, 8));
+        barra.setVisible(false);
+        barra.setManaged(false);
+        return barra;
+    }
+
+    /**
+     * Barra de localizar e substituir (oculta até ser aberta pelo menu Editar).
+     * A busca acontece a cada tecla; Enter e Shift+Enter percorrem as ocorrências, Esc fecha.
+     */
+    private HBox criarBarraBusca() {
+        campoBusca.setPromptText("Localizar");
+        campoBusca.setPrefColumnCount(18);
+        campoSubstituir.setPromptText("Substituir por");
+        campoSubstituir.setPrefColumnCount(14);
+        Button btnAnterior = new Button("▲");
+        btnAnterior.setTooltip(new Tooltip("Ocorrência anterior (Shift+Enter)"));
+        Button btnProxima = new Button("▼");
+        btnProxima.setTooltip(new Tooltip("Próxima ocorrência (Enter)"));
+        Button btnSubstituir = new Button("Substituir");
+        Button btnSubstituirTudo = new Button("Substituir tudo");
+        Button btnFechar = new Button("✕");
+
+        campoBusca.textProperty().addListener((obs, oldVal, newVal) -> iniciarBusca());
+        chkExpressaoRegular.setOnAction(e -> iniciarBusca());
+        chkMaiusculas.setOnAction(e -> iniciarBusca());
+        campoBusca.setOnKeyPressed(e -> {
+            if (e.getCode() == KeyCode.ENTER) {
+                irParaOcorrencia(!e.isShiftDown());
+                e.consume();
+            }
+        });
+        campoSubstituir.setOnAction(e -> substituirOcorrencia());
+        btnAnterior.setOnAction(e -> irParaOcorrencia(false));
+        btnProxima.setOnAction(e -> irParaOcorrencia(true));
+        btnSubstituir.setOnAction(e -> substituirOcorrencia());
+        btnSubstituirTudo.setOnAction(e -> substituirTodas());
+        btnFechar.setOnAction(e -> ocultarBarraBusca());
+
+        HBox barra = new HBox(8, campoBusca, btnAnterior, btnProxima, chkMaiusculas, chkExpressaoRegular,
+                new Separator(), campoSubstituir, btnSubstituir, btnSubstituirTudo, statusBusca, btnFechar);
+        barra.setAlignment(Pos.CENTER_LEFT);
+        barra.setPadding(new Insets(4, 8, 4, 8));
+        barra.setOnKeyPressed(e -> {
+            if (e.getCode() == KeyCode.ESCAPE) ocultarBarraBusca();
+        });
+        barra.setVisible(false);
+        barra.setManaged(false);
+        return barra;
+    }
+
+    private void mostrarBarraBusca(TextField foco) {
+        barraBusca.setVisible(true);
+        barraBusca.setManaged(true);
+        // A seleção de uma linha vira o texto a localizar
+        String selecionado = textArea.getSelectedText();
+        if (!selecionado.isEmpty() && selecionado.indexOf('\n') < 0) {
+            campoBusca.setText(selecionado);
+        } else if (!busca.isAtiva()) {
+            iniciarBusca();
+        }
+        foco.requestFocus();
+        foco.selectAll();
+    }
+
+    private void ocultarBarraBusca() {
+        barraBusca.setVisible(false);
+        barraBusca.setManaged(false);
+        busca.limpar();
+        textArea.requestFocus();
+    }
+
+    private void iniciarBusca() {
+        campoBusca.setStyle("");
+        try {
+            busca.buscar(campoBusca.getText(), chkExpressaoRegular.isSelected(), chkMaiusculas.isSelected());
+        } catch (PatternSyntaxException e) {
+            busca.limpar();
+            campoBusca.setStyle("-fx-text-fill: #d32f2f;");
+            statusBusca.setText("Expressão inválida");
+        }
+    }
+
+    /**
+     * Seleciona a próxima ocorrência depois da seleção (ou a anterior, antes dela)
+     */
+    private void irParaOcorrencia(boolean avancar) {
+        IndexRange selecao = textArea.getSelection();
+        IndexRange ocorrencia = busca.proxima(avancar ? selecao.getEnd() : selecao.getStart(), avancar);
+        if (ocorrencia == null) return;
+        textArea.selectRange(ocorrencia.getStart(), ocorrencia.getEnd());
+        textArea.requestFollowCaret();
+        atualizarStatusBusca();
+    }
+
+    private void substituirOcorrencia() {
+        try {
+            if (!busca.substituir(campoSubstituir.getText())) {
+                irParaOcorrencia(true);  // A seleção não é uma ocorrência: só vai até a próxima
+                return;
+            }
+        } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+            mostrarErro("Substituir", "Substituição inválida: " + e.getMessage());
+            return;
+        }
+        irParaOcorrencia(true);
+    }
+
+    private void substituirTodas() {
+        try {
+            int substituidas = busca.substituirTudo(campoSubstituir.getText());
+            statusBusca.setText(substituidas + " substituídas");
+        } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+            mostrarErro("Substituir", "Substituição inválida: " + e.getMessage());
+        }
+    }
+
+    private void atualizarStatusBusca() {
+        if (!busca.isAtiva()) {
+            if (campoBusca.getStyle().isEmpty()) statusBusca.setText("");
+        } else if (busca.isExaminando()) {
+            statusBusca.setText("Buscando...");
+        } else if (busca.getTotal() == 0) {
+            statusBusca.setText("Nenhuma ocorrência");
+        } else {
+            int atual = busca.numeroDa(textArea.getSelection());
+            statusBusca.setText(atual > 0 ? String.format("%d de %d", atual, busca.getTotal())
+                                          : String.format("%d ocorrências", busca.getTotal()));
+        }
+    }
+
     private void novoDocumento() {
+        cancelarCarregamento();
+        fecharArquivoGrande();
         textArea.clear();
         currentFile = null;
+        charsetArquivo = StandardCharsets.UTF_8;
         configurarFormatoPadrao();
+        if (diario != null) diario.iniciarDoDocumento(null, charsetArquivo);
     }
 
-    private void abrirArquivo() {
+    /**
+     * Pergunta a codificação do arquivo a abrir
+     */
+    private Optional<Charset> escolherCodificacao() {
+        ChoiceDialog<String> dialogo = new ChoiceDialog<>(DETECTAR_CODIFICACAO,
+                DETECTAR_CODIFICACAO, "UTF-8", "UTF-16LE", "UTF-16BE", "ISO-8859-1", "windows-1252");
+        dialogo.setTitle("Abrir Texto");
+        dialogo.setHeaderText(null);
+        dialogo.setContentText("Codificação:");
+        return dialogo.showAndWait().map(nome ->
+                nome.equals(DETECTAR_CODIFICACAO) ? null : Charset.forName(nome));
+    }
+
+    /**
+     * Abre um arquivo de texto em segundo plano. O conteúdo é acrescentado em blocos,
+     * então o início já pode ser lido enquanto o restante carrega. A edição só é liberada
+     * no fim: o diário parte do arquivo em disco e não registra nada durante o carregamento.
+     * Com charset null, a codificação é detectada.
+     */
+    private void abrirArquivo(Charset charset) {
         FileChooser fileChooser = new FileChooser();
         fileChooser.setTitle("Abrir Documento de Texto");
-        fileChooser.getExtensionFilters().add(new FileChooser.ExtensionFilter("Arquivos de Texto", "*.txt"));
+        fileChooser.getExtensionFilters().addAll(
+                new FileChooser.ExtensionFilter("Documentos", "*.txt", "*" + FormatoRico.EXTENSAO),
+                new FileChooser.ExtensionFilter("Arquivos de Texto", "*.txt"),
+                FILTRO_FORMATO_RICO);
         File file = fileChooser.showOpenDialog(null);
-        if (file != null) {
-            try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
-                StringBuilder content = new StringBuilder();
-                String line;
-                while ((line = reader.readLine()) != null) {
-                    content.append(line).append("\n");
+        if (file == null) return;
+        boolean rico = FormatoRico.ehArquivoRico(file.toPath());
+
+        cancelarCarregamento();
+        fecharArquivoGrande();
+        textArea.clear();
+        currentFile = null;  // Só passa a ser o arquivo atual depois de carregado por completo
+        configurarFormatoPadrao();
+        if (diario != null) diario.suspender();  // Os blocos do carregamento não vão para o diário
+
+        CarregadorTexto tarefa = new CarregadorTexto(file.toPath(), charset, textArea::appendText, rico);
+        carregamento = tarefa;
+        mostrarProgresso("Carregando " + file.getName() + "...", tarefa);
+        // O texto não pode mudar antes do fim: o diário toma o arquivo como base e os estilos
+        // do formato rico são aplicados sobre o texto completo
+        textArea.setEditable(false);
+
+        tarefa.setOnSucceeded(e -> {
+            finalizarCarregamento(tarefa);
+            if (rico) {
+                try {
+                    tarefa.getEstilos().aplicar(textArea);
+                } catch (IOException ex) {
+                    mostrarErro("Erro ao abrir arquivo", "A formatação do arquivo está corrompida; apenas o texto foi carregado.");
                 }
-                textArea.replaceText(content.toString());
-                currentFile = file;
-                configurarFormatoPadrao();
-            } catch (IOException e) {
-                mostrarErro("Erro ao abrir arquivo", "Não foi possível ler o arquivo.");
             }
+            currentFile = file;
+            charsetArquivo = tarefa.getValue();
+            textArea.getUndoManager().forgetHistory();  // Os blocos do carregamento não são desfeitos
+            if (diario != null) diario.iniciarDoArquivo(file.toPath(), charsetArquivo, null);
+        });
+        tarefa.setOnFailed(e -> {
+            finalizarCarregamento(tarefa);
+            if (diario != null) diario.iniciarDoDocumento(null, charsetArquivo);
+            mostrarErro("Erro ao abrir arquivo", "Não foi possível ler o arquivo.");
+        });
+        tarefa.setOnCancelled(e -> {
+            finalizarCarregamento(tarefa);
+            if (diario != null) diario.iniciarDoDocumento(null, charsetArquivo);  // O trecho já carregado
+        });
+
+        Thread thread = new Thread(tarefa, "carregador-texto");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Interrompe o carregamento em andamento; o texto já carregado permanece, sem arquivo associado
+     */
+    private void cancelarCarregamento() {
+        if (carregamento != null) carregamento.cancel();
+    }
+
+    private void finalizarCarregamento(CarregadorTexto tarefa) {
+        ocultarProgresso(tarefa);
+        if (carregamento == tarefa) {
+            carregamento = null;
+            textArea.setEditable(true);
         }
     }
 
+    /**
+     * Exibe o progresso da tarefa na barra inferior (o botão Cancelar passa a cancelá-la)
+     */
+    private void mostrarProgresso(String texto, Task<?> tarefa) {
+        tarefaNaBarra = tarefa;
+        statusCarregamento.setText(texto);
+        progressoCarregamento.progressProperty().bind(tarefa.progressProperty());
+        barraCarregamento.setVisible(true);
+        barraCarregamento.setManaged(true);
+    }
+
+    private void ocultarProgresso(Task<?> tarefa) {
+        if (tarefaNaBarra != tarefa) return;  // Outra tarefa já ocupa a barra
+        tarefaNaBarra = null;
+        progressoCarregamento.progressProperty().unbind();
+        barraCarregamento.setVisible(false);
+        barraCarregamento.setManaged(false);
+    }
+
     private void salvarArquivo() {
         if (currentFile == null) {
             salvarComoArquivo();
@@ -535,22 +926,356 @@ public class BlocoDeNotas {
     private void salvarComoArquivo() {
         FileChooser fileChooser = new FileChooser();
         fileChooser.setTitle("Salvar Documento");
-        fileChooser.getExtensionFilters().add(new FileChooser.ExtensionFilter("Arquivos de Texto", "*.txt"));
+        fileChooser.getExtensionFilters().addAll(new FileChooser.ExtensionFilter("Arquivos de Texto", "*.txt"),
+                FILTRO_FORMATO_RICO);
         File file = fileChooser.showSaveDialog(null);
-        if (file != null) {
-            salvarParaArquivo(file);
+        if (file != null && fileChooser.getSelectedExtensionFilter() == FILTRO_FORMATO_RICO
+                && !FormatoRico.ehArquivoRico(file.toPath()) && !file.getName().contains(".")) {
+            file = new File(file.getPath() + FormatoRico.EXTENSAO);
+        }
+        if (file != null && salvarParaArquivo(file)) {
             currentFile = file;
         }
     }
 
-    private void salvarParaArquivo(File file) {
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter(file))) {
-            writer.write(textArea.getText());
-        } catch (IOException e) {
+    /**
+     * Inicia a gravação em segundo plano; retorna false se o arquivo não puder ser salvo nesse formato
+     */
+    private boolean salvarParaArquivo(File file) {
+        if (arquivoGrande != null) {
+            // O modo de arquivo grande não guarda formatação: um .bnr sem cabeçalho não poderia ser reaberto
+            if (FormatoRico.ehArquivoRico(file.toPath())) {
+                mostrarErro("Erro ao salvar arquivo", "Arquivos grandes só podem ser salvos como texto (.txt).");
+                return false;
+            }
+            salvarArquivoGrande(file);
+            return true;
+        }
+        // O instantâneo é imutável e não copia o texto: a edição pode continuar durante a gravação.
+        // Arquivos .bnr guardam também a formatação; .txt guarda só o texto.
+        boolean rico = FormatoRico.ehArquivoRico(file.toPath());
+        if (rico) charsetArquivo = StandardCharsets.UTF_8;
+        GravadorTexto tarefa = new GravadorTexto(textArea.getContent().snapshot(), file.toPath(), charsetArquivo, rico);
+        mostrarProgresso("Salvando " + file.getName() + "...", tarefa);
+        tarefa.setOnSucceeded(e -> ocultarProgresso(tarefa));
+        tarefa.setOnCancelled(e -> ocultarProgresso(tarefa));
+        tarefa.setOnFailed(e -> {
+            ocultarProgresso(tarefa);
             mostrarErro("Erro ao salvar arquivo", "Não foi possível salvar o arquivo.");
+        });
+        gravacoes.execute(tarefa);
+        // O arquivo salvo passa a ser a base do diário (se a gravação falhar, o diário guarda o documento)
+        if (diario != null) diario.iniciarDoArquivo(file.toPath(), charsetArquivo, tarefa);
+        return true;
+    }
+
+    /**
+     * Exporta o documento para PDF em segundo plano, a partir de um instantâneo (a edição pode continuar)
+     */
+    public void exportarPDF(File file) {
+        ExportadorPDF tarefa = new ExportadorPDF(textArea.getContent().snapshot(), file.toPath(),
+                EstiloTexto.de(textArea.getStyle()));
+        mostrarProgresso("Exportando " + file.getName() + "...", tarefa);
+        tarefa.setOnSucceeded(e -> ocultarProgresso(tarefa));
+        tarefa.setOnCancelled(e -> ocultarProgresso(tarefa));
+        tarefa.setOnFailed(e -> {
+            ocultarProgresso(tarefa);
+            mostrarErro("Erro ao exportar PDF", "Não foi possível exportar o documento.");
+        });
+        exportacoes.execute(tarefa);
+    }
+
+    /**
+     * Cria a barra inferior do modo de arquivo grande (posição, navegação e ir para linha)
+     */
+    private HBox criarBarraArquivoGrande() {
+        Button btnAnterior = new Button("◀");
+        btnAnterior.setTooltip(new Tooltip("Trecho anterior"));
+        btnAnterior.setOnAction(e -> deslocarJanela(-BLOCOS_POR_JANELA));
+        Button btnSeguinte = new Button("▶");
+        btnSeguinte.setTooltip(new Tooltip("Próximo trecho"));
+        btnSeguinte.setOnAction(e -> deslocarJanela(BLOCOS_POR_JANELA));
+        Button btnIrPara = new Button("Ir para linha...");
+        btnIrPara.setOnAction(e -> irParaLinha());
+
+        HBox barra = new HBox(10, btnAnterior, btnSeguinte, btnIrPara, statusArquivoGrande);
+        barra.setAlignment(Pos.CENTER_LEFT);
+        barra.setPadding(new Insets(4, 8, 4, 8));
+        barra.setVisible(false);
+        barra.setManaged(false);
+        return barra;
+    }
+
+    /**
+     * No modo de arquivo grande, marca a janela como editada e a desloca ao rolar até uma das bordas
+     */
+    private void configurarJanelaArquivoGrande() {
+        textArea.plainTextChanges().subscribe(mudanca -> {
+            if (arquivoGrande != null && !trocandoJanela) janelaModificada = true;
+        });
+        textArea.estimatedScrollYProperty().addListener((obs, oldVal, newVal) -> {
+            if (arquivoGrande == null || trocandoJanela || quebrasNaJanela.length == 0) return;
+            if (textArea.lastVisibleParToAllParIndex() >= textArea.getParagraphs().size() - 1) {
+                deslocarJanela(1);
+            } else if (textArea.firstVisibleParToAllParIndex() == 0 && blocoJanela > 0) {
+                deslocarJanela(-1);
+            }
+        });
+    }
+
+    /**
+     * Abre um arquivo no modo de arquivo grande: o arquivo é lido sob demanda e apenas
+     * alguns blocos de linhas ficam na área de texto por vez
+     */
+    private void abrirArquivoGrande() {
+        FileChooser fileChooser = new FileChooser();
+        fileChooser.setTitle("Abrir Arquivo Grande");
+        File file = fileChooser.showOpenDialog(null);
+        if (file == null) return;
+
+        Charset charset;
+        try (FileChannel canal = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer amostra = ByteBuffer.allocate(64 * 1024);
+            canal.read(amostra);
+            amostra.flip();
+            charset = CarregadorTexto.detectarCharset(amostra);
+        } catch (IOException e) {
+            mostrarErro("Erro ao abrir arquivo", "Não foi possível ler o arquivo.");
+            return;
+        }
+        if (charset.name().startsWith("UTF-16")) {
+            mostrarErro("Erro ao abrir arquivo", "Arquivos UTF-16 não são suportados no modo de arquivo grande.");
+            return;
+        }
+
+        cancelarCarregamento();
+        fecharArquivoGrande();
+        textArea.clear();
+        configurarFormatoPadrao();
+        if (diario != null) diario.suspender();  // As edições do modo de arquivo grande não passam pelo diário
+        try {
+            carregarArquivoGrande(file, charset, 0);
+        } catch (IOException e) {
+            mostrarErro("Erro ao abrir arquivo", "Não foi possível ler o arquivo.");
         }
     }
 
+    private void carregarArquivoGrande(File file, Charset charset, long linhaInicial) throws IOException {
+        ArquivoGrande arquivo = new ArquivoGrande(file.toPath(), charset);
+        arquivoGrande = arquivo;
+        currentFile = file;
+        charsetArquivo = charset;
+        blocoJanela = 0;
+        quebrasNaJanela = new long[0];
+        linhaPendente = linhaInicial;
+        janelaModificada = false;
+        barraArquivoGrande.setVisible(true);
+        barraArquivoGrande.setManaged(true);
+        arquivo.setOnIndiceAtualizado(() -> Platform.runLater(() -> indiceAtualizado(arquivo)));
+        atualizarStatusArquivoGrande();
+    }
+
+    /**
+     * Exibe a primeira janela assim que o índice alcança a linha pendente
+     */
+    private void indiceAtualizado(ArquivoGrande arquivo) {
+        if (arquivo != arquivoGrande) return;
+        if (arquivo.getErroIndice() != null) {
+            mostrarErro("Erro ao abrir arquivo", "Não foi possível ler o arquivo.");
+        }
+        if (quebrasNaJanela.length == 0) {
+            int bloco = arquivo.blocoDaLinha(linhaPendente);
+            if (arquivo.isIndiceCompleto() || arquivo.getBlocosDisponiveis() > bloco + BLOCOS_POR_JANELA) {
+                exibirJanela(Math.max(0, bloco - 1), linhaPendente);
+            }
+        }
+        atualizarStatusArquivoGrande();
+    }
+
+    /**
+     * Exibe os blocos a partir de bloco, com a linha (do arquivo) informada no topo.
+     * As edições da janela anterior são guardadas antes; o histórico de desfazer vale só para a janela atual.
+     */
+    private void exibirJanela(int bloco, long linhaNoTopo) {
+        guardarJanela();
+        int disponiveis = arquivoGrande.getBlocosDisponiveis();
+        if (disponiveis == 0) return;
+        bloco = Math.max(0, Math.min(bloco, disponiveis - 1));
+        int quantidade = Math.min(BLOCOS_POR_JANELA, disponiveis - bloco);
+
+        StringBuilder texto = new StringBuilder();
+        long[] quebras = new long[quantidade];
+        try {
+            for (int i = 0; i < quantidade; i++) {
+                texto.append(arquivoGrande.lerBloco(bloco + i));
+                quebras[i] = arquivoGrande.quebrasDoBloco(bloco + i);
+            }
+        } catch (IOException e) {
+            mostrarErro("Erro ao abrir arquivo", "Não foi possível ler o arquivo.");
+            return;
+        }
+
+        trocandoJanela = true;
+        try {
+            textArea.replaceText(texto.toString());
+            textArea.getUndoManager().forgetHistory();
+            blocoJanela = bloco;
+            quebrasNaJanela = quebras;
+            janelaModificada = false;
+            int paragrafo = (int) Math.max(0, Math.min(linhaNoTopo - arquivoGrande.primeiraLinha(bloco),
+                    textArea.getParagraphs().size() - 1));
+            textArea.moveTo(paragrafo, 0);
+            textArea.showParagraphAtTop(paragrafo);
+        } finally {
+            trocandoJanela = false;
+        }
+        atualizarStatusArquivoGrande();
+    }
+
+    /**
+     * Devolve ao arquivo grande o texto da janela, se foi editado. O texto é redistribuído
+     * entre os blocos exibidos pela quantidade de linhas de cada um; o último fica com o restante.
+     */
+    private void guardarJanela() {
+        if (arquivoGrande == null || !janelaModificada || quebrasNaJanela.length == 0) return;
+        String texto = textArea.getText();
+        List<String> partes = new ArrayList<>(quebrasNaJanela.length);
+        int inicio = 0;
+        for (int i = 0; i < quebrasNaJanela.length - 1; i++) {
+            int fim = inicio;
+            for (long quebras = quebrasNaJanela[i]; quebras > 0 && fim < texto.length(); fim++) {
+                if (texto.charAt(fim) == '\n') quebras--;
+            }
+            partes.add(texto.substring(inicio, fim));
+            inicio = fim;
+        }
+        partes.add(texto.substring(inicio));
+        arquivoGrande.substituirBlocos(blocoJanela, partes);
+        for (int i = 0; i < quebrasNaJanela.length; i++) {
+            quebrasNaJanela[i] = ArquivoGrande.contarQuebras(partes.get(i));
+        }
+        janelaModificada = false;
+    }
+
+    /**
+     * Desloca a janela em blocos, mantendo a mesma linha no topo quando ela continuar exibida
+     */
+    private void deslocarJanela(int blocos) {
+        if (arquivoGrande == null || salvandoArquivoGrande || quebrasNaJanela.length == 0) return;
+        int destino = Math.max(0, Math.min(blocoJanela + blocos, arquivoGrande.getBlocosDisponiveis() - BLOCOS_POR_JANELA));
+        if (destino == blocoJanela) return;
+        guardarJanela();
+        long topo = arquivoGrande.primeiraLinha(blocoJanela) + textArea.firstVisibleParToAllParIndex();
+        long inicioDestino = arquivoGrande.primeiraLinha(destino);
+        long fimDestino = arquivoGrande.primeiraLinha(Math.min(destino + BLOCOS_POR_JANELA, arquivoGrande.getBlocosDisponiveis()));
+        exibirJanela(destino, topo >= inicioDestino && topo < fimDestino ? topo : inicioDestino);
+    }
+
+    /**
+     * Pergunta a linha e exibe a janela que a contém
+     */
+    private void irParaLinha() {
+        if (arquivoGrande == null || salvandoArquivoGrande) return;
+        TextInputDialog dialogo = new TextInputDialog();
+        dialogo.setTitle("Ir para linha");
+        dialogo.setHeaderText(null);
+        dialogo.setContentText("Linha (1 a " + arquivoGrande.getTotalLinhas() + "):");
+        dialogo.showAndWait().ifPresent(valor -> {
+            long linha;
+            try {
+                linha = Long.parseLong(valor.trim()) - 1;
+            } catch (NumberFormatException e) {
+                return;
+            }
+            if (linha < 0 || linha >= arquivoGrande.getTotalLinhas()) {
+                mostrarErro("Ir para linha", arquivoGrande.isIndiceCompleto()
+                        ? "Linha inexistente." : "O arquivo ainda está sendo indexado; tente novamente em instantes.");
+                return;
+            }
+            guardarJanela();
+            exibirJanela(Math.max(0, arquivoGrande.blocoDaLinha(linha) - 1), linha);
+        });
+    }
+
+    /**
+     * Grava o arquivo grande em segundo plano (blocos não editados são copiados do original)
+     * e o reabre a partir do arquivo salvo, na mesma posição. Até lá a janela fica parada:
+     * o arquivo pode ser fechado no meio da gravação, ao ser substituído.
+     */
+    private void salvarArquivoGrande(File file) {
+        if (salvandoArquivoGrande) return;
+        guardarJanela();
+        if (!arquivoGrande.isIndiceCompleto()) {
+            mostrarErro("Erro ao salvar arquivo", "O arquivo ainda está sendo indexado; tente novamente em instantes.");
+            return;
+        }
+        ArquivoGrande arquivo = arquivoGrande;
+        long topo = arquivo.primeiraLinha(blocoJanela) + textArea.firstVisibleParToAllParIndex();
+        textArea.setEditable(false);
+        salvandoArquivoGrande = true;
+        barraArquivoGrande.setDisable(true);
+        statusArquivoGrande.setText("Salvando...");
+
+        gravacoes.execute(() -> {
+            IOException erro = null;
+            try {
+                arquivo.salvar(file.toPath());
+                arquivo.close();
+            } catch (IOException e) {
+                erro = e;
+            }
+            IOException erroFinal = erro;
+            Platform.runLater(() -> {
+                textArea.setEditable(true);
+                salvandoArquivoGrande = false;
+                barraArquivoGrande.setDisable(false);
+                if (arquivo != arquivoGrande) return;
+                if (erroFinal != null) {
+                    atualizarStatusArquivoGrande();
+                    mostrarErro("Erro ao salvar arquivo", "Não foi possível salvar o arquivo.");
+                    return;
+                }
+                try {
+                    carregarArquivoGrande(file, arquivo.getCharset(), topo);
+                } catch (IOException e) {
+                    fecharArquivoGrande();
+                    mostrarErro("Erro ao abrir arquivo", "Não foi possível ler o arquivo salvo.");
+                }
+            });
+        });
+    }
+
+    /**
+     * Sai do modo de arquivo grande (edições não salvas são descartadas)
+     */
+    private void fecharArquivoGrande() {
+        if (arquivoGrande == null) return;
+        try {
+            arquivoGrande.close();
+        } catch (IOException e) {
+            // Ignora erros ao fechar
+        }
+        arquivoGrande = null;
+        quebrasNaJanela = new long[0];
+        janelaModificada = false;
+        barraArquivoGrande.setVisible(false);
+        barraArquivoGrande.setManaged(false);
+    }
+
+    private void atualizarStatusArquivoGrande() {
+        if (arquivoGrande == null) return;
+        String status;
+        if (quebrasNaJanela.length == 0) {
+            status = "Indexando...";
+        } else {
+            long primeira = arquivoGrande.primeiraLinha(blocoJanela) + 1;
+            status = String.format("Linhas %d–%d de %d", primeira,
+                    primeira + textArea.getParagraphs().size() - 1, arquivoGrande.getTotalLinhas());
+        }
+        if (!arquivoGrande.isIndiceCompleto()) status += " (indexando...)";
+        statusArquivoGrande.setText(status);
+    }
+
     private void mostrarErro(String titulo, String mensagem) {
         Alert alert = new Alert(Alert.AlertType.ERROR);
         alert.setTitle(titulo);
@@ -571,29 +1296,15 @@ public class BlocoDeNotas {
     }
     
     /**
-     * Aplica o tema (escuro ou claro) APENAS à área de texto
+     * Aplica o tema (escuro ou claro) APENAS à área de texto.
+     * As cores vêm da folha de estilo do tema, trocada no próprio componente:
+     * a troca não depende do tamanho do documento e preserva o alinhamento dos parágrafos.
      */
     private void aplicarTemaTexto(boolean darkMode) {
-        String backgroundColor = darkMode ? "#1e1e1e" : "white";
-        String textColor = darkMode ? "white" : "black";
+        String tema = darkMode ? TEMA_ESCURO_CSS : TEMA_CLARO_CSS;
+        textArea.getStylesheets().setAll(getClass().getResource(tema).toExternalForm());
 
         // Define estilo base para novo texto
-        String estiloBase = "-fx-font-family: '" + comboFontes.getValue() + "'; -fx-font-size: " + comboTamanhos.getValue() + "pt; " +
-                            "-fx-control-inner-background: " + backgroundColor + "; -fx-text-fill: " + textColor + ";";
-        
-        // Aplica estilo base ao componente (para novo texto)
-        textArea.setStyle(estiloBase);
-
-        // Aplica estilo a cada parágrafo existente
-        int numParagraphs = textArea.getParagraphs().size();
-        for (int i = 0; i < numParagraphs; i++) {
-            String estiloParagrafo = "-fx-control-inner-background: " + backgroundColor + "; -fx-text-fill: " + textColor + ";";
-            textArea.setParagraphStyle(i, estiloParagrafo);
-        }
-
-        // Se o texto estiver vazio, aplica estilo base
-        if (textArea.getLength() == 0) {
-            textArea.setStyle(estiloBase);
-        }
+        textArea.setStyle(EstiloTexto.PADRAO.comFonte(comboFontes.getValue()).comTamanho(comboTamanhos.getValue()).toCss());
     }
 }
\ No newline at end of file
@@ -0,0 +1,359 @@
+package com.blocopdfapp;
+
+import javafx.application.Platform;
+import javafx.scene.control.IndexRange;
+import javafx.scene.paint.Color;
+import org.fxmisc.richtext.InlineCssTextArea;
+import org.fxmisc.richtext.MultiChangeBuilder;
+import org.fxmisc.richtext.SelectionImpl;
+import org.fxmisc.richtext.model.Paragraph;
+import org.fxmisc.richtext.model.PlainTextChange;
+import org.fxmisc.richtext.model.StyledDocument;
+import org.fxmisc.richtext.model.TwoDimensional;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Localizar e substituir no editor, com ocorrências guardadas por parágrafo.
+ *
+ * Uma nova busca percorre um instantâneo do documento em segundo plano. Depois disso,
+ * cada alteração do texto (fluxo de alterações de texto simples da área) reexamina só os
+ * parágrafos que tocou; alterações feitas durante a varredura são reaplicadas quando ela
+ * termina. As ocorrências não atravessam quebras de linha. Só as ocorrências dos
+ * parágrafos visíveis são destacadas, com seleções extras da área (o estilo do texto não
+ * é alterado), e substituir tudo é uma única alteração múltipla, desfeita de uma vez.
+ */
+public class BuscaTexto {
+
+    private static final int LIMITE_DESTAQUES = 300;                 // Seleções de destaque na tela
+    private static final int[] NENHUMA = new int[0];
+    private static final Color COR_DESTAQUE = Color.rgb(255, 170, 0, 0.45);
+    private static final Duration INTERVALO_DESTAQUES = Duration.ofMillis(20);
+
+    private final InlineCssTextArea area;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "busca-texto");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicLong geracao = new AtomicLong();  // Invalida varreduras de buscas anteriores
+
+    private Pattern padrao;                               // null = nenhuma busca ativa
+    // Pares (início, fim) em colunas, por parágrafo; null = parágrafo ainda não examinado
+    private final ArrayList<int[]> ocorrencias = new ArrayList<>();
+    private int total = 0;
+    private boolean examinando = false;
+    private final List<int[]> pendentes = new ArrayList<>();  // (parágrafo, quebras removidas, quebras inseridas)
+
+    private final List<SelectionImpl<String, String, String>> destaques = new ArrayList<>();
+    private Runnable aoAtualizar;
+
+    /**
+     * Construtor - acompanha as alterações e a rolagem da área de texto
+     */
+    public BuscaTexto(InlineCssTextArea area) {
+        this.area = area;
+        area.multiPlainChanges().subscribe(this::alterado);
+        area.viewportDirtyEvents().successionEnds(INTERVALO_DESTAQUES).subscribe(ignorado -> atualizarDestaques());
+    }
+
+    /**
+     * Define o callback chamado quando o total de ocorrências muda
+     */
+    public void setAoAtualizar(Runnable aoAtualizar) { this.aoAtualizar = aoAtualizar; }
+
+    public int getTotal() { return total; }
+    public boolean isExaminando() { return examinando; }
+    public boolean isAtiva() { return padrao != null; }
+
+    /**
+     * Inicia uma busca (texto vazio encerra a busca atual)
+     *
+     * @throws java.util.regex.PatternSyntaxException se a expressão regular for inválida
+     */
+    public void buscar(String texto, boolean expressaoRegular, boolean diferenciarMaiusculas) {
+        if (texto.isEmpty()) {
+            limpar();
+            return;
+        }
+        int flags = expressaoRegular ? 0 : Pattern.LITERAL;
+        if (!diferenciarMaiusculas) flags |= Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE;
+        padrao = Pattern.compile(texto, flags);
+        examinarTudo();
+    }
+
+    /**
+     * Encerra a busca e remove os destaques
+     */
+    public void limpar() {
+        geracao.incrementAndGet();
+        padrao = null;
+        examinando = false;
+        pendentes.clear();
+        ocorrencias.clear();
+        ocorrencias.trimToSize();
+        total = 0;
+        atualizarDestaques();
+        avisar();
+    }
+
+    public void encerrar() {
+        limpar();
+        executor.shutdownNow();
+    }
+
+    /**
+     * Próxima ocorrência depois da posição (ou a anterior, antes dela), dando a volta no documento
+     */
+    public IndexRange proxima(int posicao, boolean avancar) {
+        if (total == 0 || examinando) return null;
+        int paragrafos = ocorrencias.size();
+        TwoDimensional.Position inicio = area.offsetToPosition(posicao, TwoDimensional.Bias.Forward);
+        int paragrafo = inicio.getMajor();
+        int coluna = inicio.getMinor();
+        // O parágrafo de partida é visto duas vezes: do lado da posição e, na volta, inteiro
+        for (int passo = 0; passo <= paragrafos; passo++) {
+            int p = Math.floorMod(paragrafo + (avancar ? passo : -passo), paragrafos);
+            int[] pares = ocorrencias.get(p);
+            if (pares == null || pares.length == 0) continue;
+            if (avancar) {
+                for (int i = 0; i < pares.length; i += 2) {
+                    if (passo > 0 || pares[i] >= coluna) return intervalo(p, pares[i], pares[i + 1]);
+                }
+            } else {
+                for (int i = pares.length - 2; i >= 0; i -= 2) {
+                    if (passo > 0 || pares[i] < coluna) return intervalo(p, pares[i], pares[i + 1]);
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Número (a partir de 1) da ocorrência que começa na posição, ou 0 se não houver
+     */
+    public int numeroDa(IndexRange ocorrencia) {
+        if (total == 0 || examinando) return 0;
+        TwoDimensional.Position inicio = area.offsetToPosition(ocorrencia.getStart(), TwoDimensional.Bias.Forward);
+        int numero = 0;
+        for (int p = 0; p < inicio.getMajor() && p < ocorrencias.size(); p++) {
+            int[] pares = ocorrencias.get(p);
+            if (pares != null) numero += pares.length / 2;
+        }
+        int[] pares = inicio.getMajor() < ocorrencias.size() ? ocorrencias.get(inicio.getMajor()) : null;
+        if (pares == null) return 0;
+        for (int i = 0; i < pares.length; i += 2) {
+            if (pares[i] == inicio.getMinor()) return numero + i / 2 + 1;
+        }
+        return 0;
+    }
+
+    /**
+     * Substitui a ocorrência selecionada (se a seleção for uma ocorrência) e indica se substituiu
+     */
+    public boolean substituir(String substituicao) {
+        IndexRange selecao = area.getSelection();
+        if (padrao == null || examinando || selecao.getLength() == 0) return false;
+        TwoDimensional.Position inicio = area.offsetToPosition(selecao.getStart(), TwoDimensional.Bias.Forward);
+        int[] pares = ocorrencias.get(inicio.getMajor());
+        if (pares == null) return false;
+        for (int i = 0; i < pares.length; i += 2) {
+            if (pares[i] == inicio.getMinor() && pares[i + 1] - pares[i] == selecao.getLength()) {
+                String texto = area.getParagraph(inicio.getMajor()).getText();
+                area.replaceText(selecao.getStart(), selecao.getEnd(), expandir(texto, pares[i], substituicao));
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Substitui todas as ocorrências numa única alteração múltipla; retorna quantas foram substituídas
+     */
+    public int substituirTudo(String substituicao) {
+        if (padrao == null || examinando || total == 0) return 0;
+        MultiChangeBuilder<String, String, String> alteracao = area.createMultiChange(total);
+        int substituidas = 0;
+        // Do fim para o início: as posições ainda não alteradas continuam válidas
+        for (int p = ocorrencias.size() - 1; p >= 0; p--) {
+            int[] pares = ocorrencias.get(p);
+            if (pares == null || pares.length == 0) continue;
+            String texto = area.getParagraph(p).getText();
+            int inicioParagrafo = area.getAbsolutePosition(p, 0);
+            for (int i = pares.length - 2; i >= 0; i -= 2) {
+                alteracao.replaceTextAbsolutely(inicioParagrafo + pares[i], inicioParagrafo + pares[i + 1],
+                        expandir(texto, pares[i], substituicao));
+                substituidas++;
+            }
+        }
+        alteracao.commit();
+        return substituidas;
+    }
+
+    /**
+     * Texto de substituição da ocorrência que começa na coluna; numa expressão regular,
+     * referências como $1 são trocadas pelos grupos
+     */
+    private String expandir(String paragrafo, int coluna, String substituicao) {
+        if ((padrao.flags() & Pattern.LITERAL) != 0) return substituicao;
+        Matcher matcher = padrao.matcher(paragrafo);
+        if (!matcher.find(coluna) || matcher.start() != coluna) return substituicao;
+        StringBuilder resultado = new StringBuilder();
+        matcher.appendReplacement(resultado, substituicao);
+        return resultado.substring(coluna);  // appendReplacement inclui o texto antes da ocorrência
+    }
+
+    private IndexRange intervalo(int paragrafo, int inicio, int fim) {
+        int base = area.getAbsolutePosition(paragrafo, 0);
+        return new IndexRange(base + inicio, base + fim);
+    }
+
+    /**
+     * Varre um instantâneo do documento inteiro em segundo plano
+     */
+    private void examinarTudo() {
+        long pedido = geracao.incrementAndGet();
+        examinando = true;
+        pendentes.clear();
+        avisar();
+        Pattern padraoPedido = padrao;
+        StyledDocument<String, String, String> instantaneo = area.getContent().snapshot();
+        executor.execute(() -> {
+            List<Paragraph<String, String, String>> paragrafos = instantaneo.getParagraphs();
+            int[][] resultado = new int[paragrafos.size()][];
+            int i = 0;
+            for (Paragraph<String, String, String> paragrafo : paragrafos) {
+                if ((i & 0x3FF) == 0 && geracao.get() != pedido) return;
+                resultado[i++] = examinar(padraoPedido, paragrafo.getText());
+            }
+            Platform.runLater(() -> varreduraConcluida(pedido, resultado));
+        });
+    }
+
+    private void varreduraConcluida(long pedido, int[][] resultado) {
+        if (geracao.get() != pedido) return;
+        ocorrencias.clear();
+        ocorrencias.addAll(Arrays.asList(resultado));
+        total = 0;
+        for (int[] pares : resultado) total += pares.length / 2;
+        examinando = false;
+        // Alterações feitas durante a varredura: os parágrafos tocados são reexaminados agora
+        for (int[] alteracao : pendentes) ajustarParagrafos(alteracao);
+        pendentes.clear();
+        for (int p = 0; p < ocorrencias.size(); p++) {
+            if (ocorrencias.get(p) == null) reexaminar(p, p);
+        }
+        atualizarDestaques();
+        avisar();
+    }
+
+    /**
+     * Alteração do texto: só os parágrafos que ela tocou são reexaminados
+     */
+    private void alterado(List<PlainTextChange> alteracoes) {
+        if (padrao == null) return;
+        if (alteracoes.size() != 1) {
+            // Alteração múltipla (substituir tudo, ou desfazê-lo): as posições intermediárias
+            // não estão mais disponíveis, então o documento é varrido de novo
+            examinarTudo();
+            return;
+        }
+        PlainTextChange alteracao = alteracoes.get(0);
+        int paragrafo = area.offsetToPosition(alteracao.getPosition(), TwoDimensional.Bias.Forward).getMajor();
+        int[] ajuste = {paragrafo, quebras(alteracao.getRemoved()), quebras(alteracao.getInserted())};
+        if (examinando) {
+            pendentes.add(ajuste);
+            return;
+        }
+        ajustarParagrafos(ajuste);
+        reexaminar(paragrafo, paragrafo + ajuste[2]);
+        avisar();  // Os destaques são refeitos quando a área terminar o layout (viewportDirtyEvents)
+    }
+
+    /**
+     * Troca as entradas dos parágrafos removidos pelas dos inseridos, ainda não examinados
+     */
+    private void ajustarParagrafos(int[] ajuste) {
+        int paragrafo = ajuste[0];
+        int fim = Math.min(ocorrencias.size(), paragrafo + ajuste[1] + 1);
+        if (paragrafo > fim) return;
+        List<int[]> removidos = ocorrencias.subList(paragrafo, fim);
+        for (int[] pares : removidos) {
+            if (pares != null) total -= pares.length / 2;
+        }
+        removidos.clear();
+        ocorrencias.addAll(paragrafo, Collections.nCopies(ajuste[2] + 1, null));
+    }
+
+    private void reexaminar(int primeiro, int ultimo) {
+        for (int p = primeiro; p <= ultimo && p < ocorrencias.size(); p++) {
+            int[] pares = examinar(padrao, area.getParagraph(p).getText());
+            int[] anteriores = ocorrencias.set(p, pares);
+            if (anteriores != null) total -= anteriores.length / 2;
+            total += pares.length / 2;
+        }
+    }
+
+    private static int[] examinar(Pattern padrao, String texto) {
+        Matcher matcher = padrao.matcher(texto);
+        int[] pares = NENHUMA;
+        int n = 0;
+        while (matcher.find()) {
+            if (matcher.end() == matcher.start()) continue;  // Ocorrências vazias (ex.: "^") não contam
+            if (n == pares.length) pares = Arrays.copyOf(pares, Math.max(4, n * 2));
+            pares[n++] = matcher.start();
+            pares[n++] = matcher.end();
+        }
+        return n == pares.length ? pares : Arrays.copyOf(pares, n);
+    }
+
+    private static int quebras(String texto) {
+        int quebras = 0;
+        for (int i = texto.indexOf('\n'); i >= 0; i = texto.indexOf('\n', i + 1)) quebras++;
+        return quebras;
+    }
+
+    /**
+     * Destaca as ocorrências dos parágrafos visíveis, reaproveitando as seleções já criadas
+     */
+    private void atualizarDestaques() {
+        int usados = 0;
+        int visiveis = area.getVisibleParagraphs().size();
+        if (padrao != null && !examinando && visiveis > 0) {
+            int primeiro = area.visibleParToAllParIndex(0);
+            int ultimo = area.visibleParToAllParIndex(visiveis - 1);
+            for (int p = primeiro; p <= ultimo && p < ocorrencias.size() && usados < LIMITE_DESTAQUES; p++) {
+                int[] pares = ocorrencias.get(p);
+                if (pares == null || pares.length == 0) continue;
+                int base = area.getAbsolutePosition(p, 0);
+                for (int i = 0; i < pares.length && usados < LIMITE_DESTAQUES; i += 2) {
+                    destaque(usados++).selectRange(base + pares[i], base + pares[i + 1]);
+                }
+            }
+        }
+        for (int i = usados; i < destaques.size(); i++) destaques.get(i).deselect();
+    }
+
+    private SelectionImpl<String, String, String> destaque(int indice) {
+        while (destaques.size() <= indice) {
+            SelectionImpl<String, String, String> selecao = new SelectionImpl<>("busca-" + destaques.size(), area,
+                    caminho -> caminho.setHighlightFill(COR_DESTAQUE));
+            area.addSelection(selecao);
+            destaques.add(selecao);
+        }
+        return destaques.get(indice);
+    }
+
+    private void avisar() {
+        if (aoAtualizar != null) aoAtualizar.run();
+    }
+}
@@ -0,0 +1,298 @@
+package com.blocopdfapp;
+
+import javax.imageio.ImageIO;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+
+/**
+ * Cache em disco das páginas e miniaturas renderizadas, mantido entre sessões.
+ * As entradas são PNG (compactos e sem perda) identificados pelo hash do conteúdo
+ * do arquivo PDF, pela página e pela escala. O espaço ocupado é limitado e as
+ * entradas menos usadas são removidas primeiro; a data de modificação do arquivo
+ * guarda o último uso, para que a ordem sobreviva ao reinício da aplicação.
+ * A gravação é feita numa thread própria, via arquivo temporário e movimentação
+ * atômica; uma entrada ilegível ou com tamanho inesperado é apagada ao ser lida.
+ */
+public class CacheDisco {
+
+    private static final String EXTENSAO = ".png";
+    private static final String EXTENSAO_TEMPORARIA = ".tmp";
+
+    private final Path diretorio;
+    private final long limiteBytes;
+
+    // Entradas conhecidas (nome -> bytes), da menos para a mais recentemente usada
+    private final LinkedHashMap<String, Long> entradas = new LinkedHashMap<>(64, 0.75f, true);
+    private long bytesUsados = 0;
+
+    private final ExecutorService gravador = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "cache-disco-pdf");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        return thread;
+    });
+
+    /**
+     * Construtor - cria o diretório, se preciso, e indexa as entradas existentes em segundo plano
+     */
+    public CacheDisco(Path diretorio, long limiteBytes) throws IOException {
+        this.diretorio = Files.createDirectories(diretorio);
+        this.limiteBytes = limiteBytes;
+        gravador.execute(this::indexarEntradas);
+    }
+
+    /**
+     * Diretório de cache do usuário, conforme o sistema operacional
+     */
+    public static Path diretorioPadrao() {
+        String sistema = System.getProperty("os.name", "").toLowerCase();
+        String home = System.getProperty("user.home");
+        Path base;
+        if (sistema.contains("win") && System.getenv("LOCALAPPDATA") != null) {
+            base = Paths.get(System.getenv("LOCALAPPDATA"));
+        } else if (sistema.contains("mac")) {
+            base = Paths.get(home, "Library", "Caches");
+        } else if (System.getenv("XDG_CACHE_HOME") != null) {
+            base = Paths.get(System.getenv("XDG_CACHE_HOME"));
+        } else {
+            base = Paths.get(home, ".cache");
+        }
+        return base.resolve("bloco-notas-pdf").resolve("paginas");
+    }
+
+    /**
+     * Calcula o hash (SHA-256) do conteúdo do arquivo, que identifica o documento no cache
+     * mesmo que ele seja renomeado ou movido
+     */
+    public static String hashArquivo(File arquivo) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException("SHA-256 indisponível", e);
+        }
+        try (FileChannel canal = FileChannel.open(arquivo.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 16);
+            while (canal.read(buffer) != -1) {
+                buffer.flip();
+                digest.update(buffer);
+                buffer.clear();
+            }
+        }
+        StringBuilder hex = new StringBuilder();
+        for (byte b : digest.digest()) {
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
+
+    /**
+     * Calcula o hash do arquivo na thread do cache, sem atrasar a abertura e a renderização;
+     * aoConcluir recebe o hash nessa thread (e não é chamado se a leitura falhar)
+     */
+    public void identificar(File arquivo, Consumer<String> aoConcluir) {
+        try {
+            gravador.execute(() -> {
+                try {
+                    aoConcluir.accept(hashArquivo(arquivo));
+                } catch (IOException e) {
+                    // Sem hash, o documento é renderizado normalmente
+                }
+            });
+        } catch (RuntimeException e) {
+            // Cache já encerrado
+        }
+    }
+
+    /**
+     * Lê a entrada para o destino, que já deve ter o tamanho esperado.
+     * Retorna false se não houver entrada; entradas corrompidas são apagadas.
+     */
+    public boolean ler(String hash, int pagina, float escala, ImagemPagina destino) {
+        String nome = nomeEntrada(hash, pagina, escala);
+        Path arquivo = diretorio.resolve(nome);
+        if (!Files.isRegularFile(arquivo)) return false;
+
+        BufferedImage lida;
+        try {
+            lida = ImageIO.read(arquivo.toFile());
+        } catch (IOException | RuntimeException e) {
+            lida = null;
+        }
+        if (lida == null || lida.getWidth() != (int) destino.getWidth()
+                || lida.getHeight() != (int) destino.getHeight()) {
+            remover(nome);
+            return false;
+        }
+
+        Graphics2D g = destino.iniciarDesenho();
+        try {
+            g.drawImage(lida, 0, 0, null);
+        } finally {
+            g.dispose();
+        }
+        marcarUso(nome, arquivo);
+        return true;
+    }
+
+    /**
+     * Grava a imagem em segundo plano. A imagem é retida até a gravação terminar,
+     * para que seu buffer não volte ao pool enquanto é codificado.
+     */
+    public void gravar(String hash, int pagina, float escala, ImagemPagina imagem) {
+        String nome = nomeEntrada(hash, pagina, escala);
+        synchronized (this) {
+            if (entradas.containsKey(nome)) return;
+        }
+        imagem.reter();
+        try {
+            gravador.execute(() -> {
+                try {
+                    gravarEntrada(nome, imagem);
+                } finally {
+                    imagem.liberar();
+                }
+            });
+        } catch (RuntimeException e) {
+            imagem.liberar();  // Cache já encerrado
+        }
+    }
+
+    /**
+     * Encerra a thread de gravação (as gravações pendentes ainda são concluídas)
+     */
+    public void encerrar() {
+        gravador.shutdown();
+    }
+
+    private void gravarEntrada(String nome, ImagemPagina imagem) {
+        Path destino = diretorio.resolve(nome);
+        Path temporario = diretorio.resolve(nome + EXTENSAO_TEMPORARIA);
+        try {
+            try (OutputStream saida = Files.newOutputStream(temporario)) {
+                if (!ImageIO.write(imagem.comoRGB(), "png", saida)) return;
+            }
+            Files.move(temporario, destino, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            adicionar(nome, Files.size(destino));
+        } catch (IOException e) {
+            // Sem espaço ou sem permissão: a página simplesmente não fica no cache
+        } finally {
+            try {
+                Files.deleteIfExists(temporario);
+            } catch (IOException e) {
+                // Ignora
+            }
+        }
+    }
+
+    /**
+     * Lê as entradas do diretório em ordem de último uso e remove restos de gravações interrompidas
+     */
+    private void indexarEntradas() {
+        List<Path> arquivos = new ArrayList<>();
+        try (DirectoryStream<Path> conteudo = Files.newDirectoryStream(diretorio)) {
+            for (Path arquivo : conteudo) {
+                String nome = arquivo.getFileName().toString();
+                if (nome.endsWith(EXTENSAO_TEMPORARIA)) {
+                    Files.deleteIfExists(arquivo);
+                } else if (nome.endsWith(EXTENSAO)) {
+                    arquivos.add(arquivo);
+                }
+            }
+        } catch (IOException e) {
+            return;
+        }
+        arquivos.sort(Comparator.comparingLong(CacheDisco::ultimaModificacao));
+        for (Path arquivo : arquivos) {
+            try {
+                adicionar(arquivo.getFileName().toString(), Files.size(arquivo));
+            } catch (IOException e) {
+                // Entrada removida durante a indexação
+            }
+        }
+    }
+
+    private void adicionar(String nome, long tamanho) {
+        List<String> excedentes = new ArrayList<>();
+        synchronized (this) {
+            Long anterior = entradas.put(nome, tamanho);
+            if (anterior != null) bytesUsados -= anterior;
+            bytesUsados += tamanho;
+
+            // Remove as entradas menos usadas até caber no limite
+            Iterator<Map.Entry<String, Long>> it = entradas.entrySet().iterator();
+            while (bytesUsados > limiteBytes && it.hasNext()) {
+                Map.Entry<String, Long> maisAntiga = it.next();
+                if (maisAntiga.getKey().equals(nome)) continue;
+                bytesUsados -= maisAntiga.getValue();
+                excedentes.add(maisAntiga.getKey());
+                it.remove();
+            }
+        }
+        for (String excedente : excedentes) {
+            apagar(excedente);
+        }
+    }
+
+    private void marcarUso(String nome, Path arquivo) {
+        synchronized (this) {
+            entradas.get(nome);  // Atualiza a ordem de acesso
+        }
+        try {
+            Files.setLastModifiedTime(arquivo, FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (IOException e) {
+            // A ordem da próxima sessão fica um pouco menos precisa
+        }
+    }
+
+    private void remover(String nome) {
+        synchronized (this) {
+            Long tamanho = entradas.remove(nome);
+            if (tamanho != null) bytesUsados -= tamanho;
+        }
+        apagar(nome);
+    }
+
+    private void apagar(String nome) {
+        try {
+            Files.deleteIfExists(diretorio.resolve(nome));
+        } catch (IOException e) {
+            // Ignora: será tentado de novo quando a entrada for lida
+        }
+    }
+
+    private static long ultimaModificacao(Path arquivo) {
+        try {
+            return Files.getLastModifiedTime(arquivo).toMillis();
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    private static String nomeEntrada(String hash, int pagina, float escala) {
+        return String.format("%s-%d-%08x%s", hash, pagina, Float.floatToIntBits(escala), EXTENSAO);
+    }
+}
@@ -0,0 +1,121 @@
+package com.blocopdfapp;
+
+import javafx.scene.image.Image;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Cache LRU das páginas PDF já renderizadas.
+ * O limite é definido em bytes (largura x altura x 4) e não em número de entradas,
+ * de modo que o consumo de memória não depende do tamanho das páginas nem do zoom.
+ * Deve ser usado na JavaFX Application Thread: as imagens removidas são descartadas
+ * e seus buffers voltam ao pool assim que saem da tela.
+ */
+public class CachePaginas {
+
+    /**
+     * Chave de uma página renderizada: documento, índice da página e escala.
+     * Os blocos (tiles) de páginas grandes usam também a coluna e a linha do bloco;
+     * a página inteira usa -1 nesses campos.
+     */
+    public record Chave(long documento, int pagina, float escala, int coluna, int linha) {
+        public Chave(long documento, int pagina, float escala) {
+            this(documento, pagina, escala, -1, -1);
+        }
+    }
+
+    private final LinkedHashMap<Chave, Image> imagens = new LinkedHashMap<>(16, 0.75f, true);
+    private long limiteBytes;
+    private long bytesUsados = 0;
+
+    /**
+     * Construtor - define o orçamento de memória em bytes
+     */
+    public CachePaginas(long limiteBytes) {
+        this.limiteBytes = limiteBytes;
+    }
+
+    /**
+     * Retorna a imagem em cache (ou null) e a marca como usada recentemente
+     */
+    public synchronized Image get(Chave chave) {
+        return imagens.get(chave);
+    }
+
+    /**
+     * Indica se a página está em cache, sem alterar a ordem de uso
+     */
+    public synchronized boolean contem(Chave chave) {
+        return imagens.containsKey(chave);
+    }
+
+    /**
+     * Adiciona uma imagem, removendo as menos usadas se o orçamento for excedido
+     */
+    public synchronized void put(Chave chave, Image imagem) {
+        long tamanho = tamanhoEmBytes(imagem);
+        if (tamanho > limiteBytes) {  // Imagem maior que todo o orçamento
+            descartar(imagem);
+            return;
+        }
+
+        Image anterior = imagens.put(chave, imagem);
+        if (anterior != null) {
+            bytesUsados -= tamanhoEmBytes(anterior);
+            if (anterior != imagem) descartar(anterior);
+        }
+        bytesUsados += tamanho;
+        removerExcedente();
+    }
+
+    /**
+     * Altera o orçamento de memória, removendo entradas se necessário
+     */
+    public synchronized void setLimiteBytes(long limiteBytes) {
+        this.limiteBytes = limiteBytes;
+        removerExcedente();
+    }
+
+    public synchronized long getLimiteBytes() { return limiteBytes; }
+    public synchronized long getBytesUsados() { return bytesUsados; }
+
+    /**
+     * Esvazia o cache
+     */
+    public synchronized void clear() {
+        imagens.values().forEach(CachePaginas::descartar);
+        imagens.clear();
+        bytesUsados = 0;
+    }
+
+    /**
+     * Remove as entradas menos usadas até respeitar o orçamento
+     */
+    private void removerExcedente() {
+        Iterator<Map.Entry<Chave, Image>> it = imagens.entrySet().iterator();
+        while (bytesUsados > limiteBytes && it.hasNext()) {
+            Map.Entry<Chave, Image> maisAntiga = it.next();
+            bytesUsados -= tamanhoEmBytes(maisAntiga.getValue());
+            it.remove();
+            descartar(maisAntiga.getValue());
+        }
+    }
+
+    /**
+     * Devolve ao pool o buffer de uma imagem que saiu do cache
+     */
+    private static void descartar(Image imagem) {
+        if (imagem instanceof ImagemPagina) {
+            ((ImagemPagina) imagem).descartar();
+        }
+    }
+
+    /**
+     * Estimativa do tamanho da imagem em memória (ARGB, 4 bytes por pixel)
+     */
+    private static long tamanhoEmBytes(Image imagem) {
+        return (long) imagem.getWidth() * (long) imagem.getHeight() * 4L;
+    }
+}
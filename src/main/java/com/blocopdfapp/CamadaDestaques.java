@@ -0,0 +1,44 @@
+package com.blocopdfapp;
+
+import javafx.scene.layout.Pane;
+import javafx.scene.paint.Color;
+import javafx.scene.shape.Rectangle;
+
+/**
+ * Camada transparente sobre a imagem de uma página que destaca as ocorrências da busca.
+ * Os retângulos chegam em pontos da página (como no IndiceTextoPDF) e são desenhados na
+ * escala em que a página está exibida.
+ */
+public class CamadaDestaques extends Pane {
+
+    private static final Color COR_OCORRENCIA = Color.rgb(255, 220, 0, 0.35);
+    private static final Color COR_ATUAL = Color.rgb(255, 120, 0, 0.5);
+
+    public CamadaDestaques() {
+        setMouseTransparent(true);
+        setPickOnBounds(false);
+    }
+
+    /**
+     * Desenha as ocorrências da página (atual pode ser null) e remove as anteriores
+     */
+    public void exibir(float[] ocorrencias, float[] atual, double escala) {
+        getChildren().clear();
+        adicionar(ocorrencias, COR_OCORRENCIA, escala);
+        adicionar(atual, COR_ATUAL, escala);
+    }
+
+    public void limpar() {
+        getChildren().clear();
+    }
+
+    private void adicionar(float[] retangulos, Color cor, double escala) {
+        if (retangulos == null) return;
+        for (int i = 0; i + 3 < retangulos.length; i += 4) {
+            Rectangle retangulo = new Rectangle(retangulos[i] * escala, retangulos[i + 1] * escala,
+                    retangulos[i + 2] * escala, retangulos[i + 3] * escala);
+            retangulo.setFill(cor);
+            getChildren().add(retangulo);
+        }
+    }
+}
@@ -0,0 +1,197 @@
+package com.blocopdfapp;
+
+import javafx.application.Platform;
+import javafx.concurrent.Task;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.Semaphore;
+import java.util.function.Consumer;
+
+/**
+ * Carrega um arquivo de texto em segundo plano, lendo via FileChannel com a
+ * codificação informada (ou detectada), e entrega o conteúdo em blocos na
+ * JavaFX Application Thread. O início do documento aparece e pode ser lido
+ * antes de o arquivo terminar de ser lido. No máximo alguns blocos ficam
+ * aguardando a interface, então a memória não cresce com o tamanho do arquivo.
+ * Quebras de linha \r\n e \r são convertidas para \n.
+ * No formato rico (FormatoRico), o cabeçalho de estilos é lido antes do texto e
+ * fica disponível em getEstilos() para ser aplicado ao fim do carregamento.
+ */
+public class CarregadorTexto extends Task<Charset> {
+
+    private static final int BYTES_POR_LEITURA = 256 * 1024;
+    private static final int BLOCOS_PENDENTES = 4;           // Blocos aguardando a interface
+    private static final int BYTES_DETECCAO = 64 * 1024;     // Amostra usada para detectar a codificação
+
+    private final Path arquivo;
+    private final Charset charsetEscolhido;                  // null = detectar
+    private final Consumer<String> aoLerBloco;
+    private final boolean rico;
+    private volatile FormatoRico.Estilos estilos;
+    private final Semaphore blocosLivres = new Semaphore(BLOCOS_PENDENTES);
+    private boolean crPendente = false;  // \r no fim do bloco anterior (pode ser metade de \r\n)
+
+    /**
+     * Construtor - aoLerBloco é chamado na JavaFX Application Thread, na ordem do arquivo
+     */
+    public CarregadorTexto(Path arquivo, Charset charset, Consumer<String> aoLerBloco) {
+        this(arquivo, charset, aoLerBloco, false);
+    }
+
+    /**
+     * Construtor - com rico = true lê um arquivo no formato rico (sempre UTF-8)
+     */
+    public CarregadorTexto(Path arquivo, Charset charset, Consumer<String> aoLerBloco, boolean rico) {
+        this.arquivo = arquivo;
+        this.charsetEscolhido = rico ? StandardCharsets.UTF_8 : charset;
+        this.aoLerBloco = aoLerBloco;
+        this.rico = rico;
+    }
+
+    /**
+     * Estilos do arquivo rico (disponíveis depois do carregamento; null para texto simples)
+     */
+    public FormatoRico.Estilos getEstilos() { return estilos; }
+
+    /**
+     * Lê o arquivo e retorna a codificação usada
+     */
+    @Override
+    protected Charset call() throws Exception {
+        try (FileChannel canal = FileChannel.open(arquivo, StandardOpenOption.READ)) {
+            long tamanho = canal.size();
+            ByteBuffer bytes = ByteBuffer.allocateDirect(BYTES_POR_LEITURA);
+            if (rico) estilos = FormatoRico.lerEstilos(canal);  // O texto começa logo após o cabeçalho
+
+            // Detecta a codificação pela marca de ordem de bytes (BOM) ou pelo conteúdo
+            canal.read(bytes);
+            bytes.flip();
+            Charset charset = charsetEscolhido != null ? charsetEscolhido : detectarCharset(bytes);
+            pularBOM(bytes, charset);
+
+            CharsetDecoder decoder = charset.newDecoder()
+                    .onMalformedInput(CodingErrorAction.REPLACE)
+                    .onUnmappableCharacter(CodingErrorAction.REPLACE);
+            CharBuffer caracteres = CharBuffer.allocate(BYTES_POR_LEITURA);
+            boolean fim = false;
+
+            while (!fim) {
+                if (isCancelled()) return charset;
+                CoderResult resultado = decoder.decode(bytes, caracteres, false);
+                if (resultado.isUnderflow()) {  // Precisa de mais bytes
+                    bytes.compact();
+                    fim = canal.read(bytes) < 0;
+                    bytes.flip();
+                }
+                if (fim) {
+                    entregar(caracteres, false);
+                    decoder.decode(bytes, caracteres, true);
+                    decoder.flush(caracteres);
+                }
+                entregar(caracteres, fim);
+                updateProgress(Math.min(canal.position(), tamanho), tamanho);
+            }
+            return charset;
+        }
+    }
+
+    /**
+     * Detecta a codificação: BOM de UTF-8/UTF-16 ou, sem BOM, UTF-8 se a amostra for
+     * UTF-8 válido e windows-1252 (texto legado do Windows) caso contrário
+     */
+    public static Charset detectarCharset(ByteBuffer amostra) {
+        ByteBuffer b = amostra.duplicate();
+        if (b.remaining() >= 3 && (b.get(b.position()) & 0xFF) == 0xEF
+                && (b.get(b.position() + 1) & 0xFF) == 0xBB && (b.get(b.position() + 2) & 0xFF) == 0xBF) {
+            return StandardCharsets.UTF_8;
+        }
+        if (b.remaining() >= 2) {
+            int b0 = b.get(b.position()) & 0xFF;
+            int b1 = b.get(b.position() + 1) & 0xFF;
+            if (b0 == 0xFF && b1 == 0xFE) return StandardCharsets.UTF_16LE;
+            if (b0 == 0xFE && b1 == 0xFF) return StandardCharsets.UTF_16BE;
+        }
+
+        if (b.remaining() > BYTES_DETECCAO) b.limit(b.position() + BYTES_DETECCAO);
+        CharsetDecoder utf8 = StandardCharsets.UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPORT)
+                .onUnmappableCharacter(CodingErrorAction.REPORT);
+        try {
+            // endOfInput = false: uma sequência cortada no fim da amostra não conta como erro
+            CoderResult resultado = utf8.decode(b, CharBuffer.allocate(b.remaining()), false);
+            if (resultado.isError()) resultado.throwException();
+            return StandardCharsets.UTF_8;
+        } catch (CharacterCodingException e) {
+            return Charset.forName("windows-1252");
+        }
+    }
+
+    private static void pularBOM(ByteBuffer bytes, Charset charset) {
+        int tamanhoBOM = 0;
+        int b0 = bytes.remaining() >= 2 ? bytes.get(0) & 0xFF : -1;
+        int b1 = bytes.remaining() >= 2 ? bytes.get(1) & 0xFF : -1;
+        if (charset.equals(StandardCharsets.UTF_8) && bytes.remaining() >= 3
+                && b0 == 0xEF && b1 == 0xBB && (bytes.get(2) & 0xFF) == 0xBF) {
+            tamanhoBOM = 3;
+        } else if (charset.equals(StandardCharsets.UTF_16LE) && b0 == 0xFF && b1 == 0xFE) {
+            tamanhoBOM = 2;
+        } else if (charset.equals(StandardCharsets.UTF_16BE) && b0 == 0xFE && b1 == 0xFF) {
+            tamanhoBOM = 2;  // Só a marca da ordem de bytes escolhida; sem ela, o primeiro caractere é texto
+        }
+        bytes.position(bytes.position() + tamanhoBOM);
+    }
+
+    /**
+     * Converte as quebras de linha dos caracteres decodificados e entrega o bloco
+     */
+    private void entregar(CharBuffer caracteres, boolean fim) throws InterruptedException {
+        caracteres.flip();
+        StringBuilder bloco = new StringBuilder(caracteres.remaining() + 1);
+        if (crPendente && caracteres.hasRemaining()) {
+            crPendente = false;
+            if (caracteres.get(caracteres.position()) == '\n') caracteres.get();
+            bloco.append('\n');
+        }
+        while (caracteres.hasRemaining()) {
+            char c = caracteres.get();
+            if (c != '\r') {
+                bloco.append(c);
+            } else if (!caracteres.hasRemaining()) {
+                crPendente = true;  // Decide no próximo bloco se é \r\n ou \r isolado
+            } else {
+                if (caracteres.get(caracteres.position()) == '\n') caracteres.get();
+                bloco.append('\n');
+            }
+        }
+        caracteres.clear();
+        if (fim && crPendente) {
+            crPendente = false;
+            bloco.append('\n');
+        }
+        if (bloco.length() > 0) entregar(bloco.toString());
+    }
+
+    /**
+     * Entrega o bloco à interface, esperando se ela ainda não consumiu os anteriores
+     */
+    private void entregar(String bloco) throws InterruptedException {
+        blocosLivres.acquire();
+        Platform.runLater(() -> {
+            try {
+                if (!isCancelled()) aoLerBloco.accept(bloco);
+            } finally {
+                blocosLivres.release();
+            }
+        });
+    }
+}
@@ -0,0 +1,56 @@
+package com.blocopdfapp;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Funções de codificação binária compacta usadas pelos formatos do editor:
+ * inteiros de tamanho variável (varint, 7 bits por byte) e textos UTF-8
+ * precedidos do tamanho.
+ */
+final class CodificacaoBinaria {
+
+    private CodificacaoBinaria() {
+    }
+
+    /**
+     * Escreve um inteiro não negativo em 1 a 10 bytes (valores pequenos ocupam 1 byte)
+     */
+    static void escreverVarint(DataOutput saida, long valor) throws IOException {
+        while ((valor & ~0x7FL) != 0) {
+            saida.writeByte((int) ((valor & 0x7F) | 0x80));
+            valor >>>= 7;
+        }
+        saida.writeByte((int) valor);
+    }
+
+    static long lerVarint(DataInput entrada) throws IOException {
+        long valor = 0;
+        for (int deslocamento = 0; deslocamento < 64; deslocamento += 7) {
+            int b = entrada.readUnsignedByte();
+            valor |= (long) (b & 0x7F) << deslocamento;
+            if ((b & 0x80) == 0) return valor;
+        }
+        throw new IOException("Inteiro mal formado");
+    }
+
+    static int lerVarintInt(DataInput entrada) throws IOException {
+        long valor = lerVarint(entrada);
+        if (valor > Integer.MAX_VALUE) throw new IOException("Valor fora do limite: " + valor);
+        return (int) valor;
+    }
+
+    static void escreverTexto(DataOutput saida, String texto) throws IOException {
+        byte[] bytes = texto.getBytes(StandardCharsets.UTF_8);
+        escreverVarint(saida, bytes.length);
+        saida.write(bytes);
+    }
+
+    static String lerTexto(DataInput entrada) throws IOException {
+        byte[] bytes = new byte[lerVarintInt(entrada)];
+        entrada.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
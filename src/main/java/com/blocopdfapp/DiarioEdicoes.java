@@ -0,0 +1,645 @@
+package com.blocopdfapp;
+
+import org.fxmisc.richtext.InlineCssTextArea;
+import org.fxmisc.richtext.model.Paragraph;
+import org.fxmisc.richtext.model.ReadOnlyStyledDocumentBuilder;
+import org.fxmisc.richtext.model.RichTextChange;
+import org.fxmisc.richtext.model.StyleSpan;
+import org.fxmisc.richtext.model.StyleSpans;
+import org.fxmisc.richtext.model.StyleSpansBuilder;
+import org.fxmisc.richtext.model.StyledDocument;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.zip.CRC32;
+
+/**
+ * Diário de edições do editor (write-ahead log), usado para recuperar o documento
+ * após uma queda da aplicação. Cada alteração de texto ou estilo é acrescentada ao
+ * diário como um registro binário compacto (posição, tamanho removido e o trecho
+ * inserido com seus estilos), então o custo depende do tamanho da edição, não do
+ * documento. Os registros são acumulados na memória e gravados em lote, com fsync,
+ * numa thread própria.
+ *
+ * O diário começa com um cabeçalho que aponta a base das edições: o arquivo salvo
+ * (identificado por tamanho e data de modificação) ou um instantâneo do documento
+ * gravado no próprio diário. Ao salvar, o diário é reiniciado com o arquivo como base;
+ * quando cresce demais, é compactado num instantâneo. Cada registro leva um CRC32, e
+ * a leitura para no primeiro registro incompleto ou corrompido (fim de uma gravação
+ * interrompida).
+ *
+ * Cada sessão trava seu próprio arquivo de trava; um diário sem sessão viva é de
+ * uma execução que terminou sem salvar e pode ser recuperado.
+ */
+public class DiarioEdicoes {
+
+    private static final String EXTENSAO = ".diario";
+    private static final String EXTENSAO_TRAVA = ".trava";
+    private static final String EXTENSAO_FALHA = ".diario-falhou";   // Diário que não pôde ser reproduzido
+    private static final long INTERVALO_GRAVACAO_MS = 500;              // Espera máxima de um registro na memória
+    private static final long LIMITE_COMPACTACAO = 8L * 1024 * 1024;     // Bytes de registros antes de compactar
+    private static final int PARAGRAFOS_POR_TRECHO = 1024;              // Parágrafos por registro de instantâneo
+    private static final int TAMANHO_MAXIMO_REGISTRO = 256 * 1024 * 1024;
+
+    // Tipos de registro
+    private static final byte CABECALHO = 1;
+    private static final byte EDICAO = 2;
+    private static final byte INSTANTANEO = 3;
+
+    private final Path arquivo;
+    private final Path arquivoTrava;
+    private final FileChannel canalTrava;
+    private final FileLock trava;
+    private final Supplier<StyledDocument<String, String, String>> documento;
+    private final ScheduledExecutorService gravador;
+
+    // Estado da thread da interface
+    private final Map<String, Integer> estilos = new HashMap<>();  // Tabela de estilos do arquivo atual
+    private Path caminho;                  // Arquivo associado ao documento (pode ser null)
+    private Charset charset = StandardCharsets.UTF_8;
+    private boolean ativo = false;
+    private long bytesDesdeRotacao = 0;
+
+    // Compartilhado com a thread de gravação (protegido por this)
+    private final ByteArrayOutputStream pendente = new ByteArrayOutputStream();
+    private long geracao = 0;              // Incrementada a cada reinício do diário
+    private long geracaoGravada = -1;      // Geração do arquivo aberto em canal
+    private FileChannel canal;             // Usado só pela thread de gravação
+    private volatile boolean naoSalvo = false;  // Há edições que só existem no diário
+
+    /**
+     * Construtor - cria o diário da sessão no diretório; documento fornece um
+     * instantâneo do documento atual (chamado na thread da interface)
+     */
+    public DiarioEdicoes(Path diretorio, Supplier<StyledDocument<String, String, String>> documento) throws IOException {
+        Files.createDirectories(diretorio);
+        String nome = "sessao-" + ProcessHandle.current().pid() + "-" + System.currentTimeMillis();
+        this.arquivo = diretorio.resolve(nome + EXTENSAO);
+        this.arquivoTrava = diretorio.resolve(nome + EXTENSAO_TRAVA);
+        this.canalTrava = FileChannel.open(arquivoTrava, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        this.trava = canalTrava.lock();
+        this.documento = documento;
+
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, r -> {
+            Thread thread = new Thread(r, "diario-edicoes");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+        this.gravador = executor;
+        gravador.scheduleWithFixedDelay(this::gravarPendentes, INTERVALO_GRAVACAO_MS,
+                INTERVALO_GRAVACAO_MS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Diretório de dados do usuário onde ficam os diários, conforme o sistema operacional
+     */
+    public static Path diretorioPadrao() {
+        String sistema = System.getProperty("os.name", "").toLowerCase();
+        String home = System.getProperty("user.home");
+        Path base;
+        if (sistema.contains("win") && System.getenv("LOCALAPPDATA") != null) {
+            base = Paths.get(System.getenv("LOCALAPPDATA"));
+        } else if (sistema.contains("mac")) {
+            base = Paths.get(home, "Library", "Application Support");
+        } else if (System.getenv("XDG_STATE_HOME") != null) {
+            base = Paths.get(System.getenv("XDG_STATE_HOME"));
+        } else {
+            base = Paths.get(home, ".local", "state");
+        }
+        return base.resolve("bloco-notas-pdf").resolve("diario");
+    }
+
+    /**
+     * Acrescenta a alteração ao diário (chamado na thread da interface, para cada
+     * alteração da área de texto)
+     */
+    public void registrar(RichTextChange<String, String, String> mudanca) {
+        if (!ativo) return;
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        try {
+            DataOutputStream saida = new DataOutputStream(bytes);
+            saida.writeByte(EDICAO);
+            CodificacaoBinaria.escreverVarint(saida, mudanca.getPosition());
+            CodificacaoBinaria.escreverVarint(saida, mudanca.getRemoved().length());
+            codificarParagrafos(saida, mudanca.getInserted().getParagraphs(), estilos);
+        } catch (IOException e) {
+            return;  // Não ocorre ao escrever na memória
+        }
+        naoSalvo = true;
+        bytesDesdeRotacao += acrescentar(bytes.toByteArray());
+        if (bytesDesdeRotacao > LIMITE_COMPACTACAO) compactar();
+    }
+
+    /**
+     * Reinicia o diário com o arquivo como base (após abrir ou salvar). Se gravacao
+     * não for null, o arquivo só vira base quando ela terminar com sucesso; se falhar,
+     * o diário guarda um instantâneo do documento no momento desta chamada.
+     */
+    public void iniciarDoArquivo(Path caminho, Charset charset, Future<?> gravacao) {
+        rotacionar(caminho, charset, true, gravacao, true);
+        naoSalvo = false;
+    }
+
+    /**
+     * Reinicia o diário com um instantâneo do documento atual (documento novo ou recuperado)
+     */
+    public void iniciarDoDocumento(Path caminho, Charset charset) {
+        rotacionar(caminho, charset, false, null, true);
+    }
+
+    /**
+     * Para de registrar alterações e esvazia o diário (durante carregamentos e no modo
+     * de arquivo grande, cujo conteúdo não passa pelo diário)
+     */
+    public void suspender() {
+        rotacionar(null, StandardCharsets.UTF_8, false, null, false);
+        naoSalvo = false;
+    }
+
+    /**
+     * Grava os registros pendentes e fecha o diário. Sem edições não salvas, o diário
+     * é apagado; caso contrário fica no disco para ser recuperado.
+     */
+    public void encerrar() {
+        ativo = false;
+        gravador.execute(() -> {
+            gravarPendentes();
+            fecharCanal();
+            if (!naoSalvo) apagar(arquivo);
+            try {
+                trava.release();
+                canalTrava.close();
+                Files.deleteIfExists(arquivoTrava);
+            } catch (IOException e) {
+                // A trava é liberada pelo sistema ao fim do processo
+            }
+        });
+        gravador.shutdown();
+        try {
+            gravador.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Diários de sessões encerradas sem salvar (sem trava ativa), do mais recente ao mais antigo
+     */
+    public static List<Path> diariosOrfaos(Path diretorio) {
+        List<Path> orfaos = new ArrayList<>();
+        if (!Files.isDirectory(diretorio)) return orfaos;
+        try (DirectoryStream<Path> conteudo = Files.newDirectoryStream(diretorio, "*" + EXTENSAO)) {
+            for (Path diario : conteudo) {
+                String nome = diario.getFileName().toString();
+                Path arquivoTrava = diario.resolveSibling(nome.substring(0, nome.length() - EXTENSAO.length()) + EXTENSAO_TRAVA);
+                if (!sessaoAtiva(arquivoTrava)) orfaos.add(diario);
+            }
+        } catch (IOException e) {
+            return orfaos;
+        }
+        orfaos.sort(Comparator.comparingLong(DiarioEdicoes::ultimaModificacao).reversed());
+        return orfaos;
+    }
+
+    /**
+     * Reconstrói na área de texto o documento registrado no diário: carrega a base
+     * (arquivo ou instantâneo) e reaplica as edições. Retorna o arquivo associado
+     * e a codificação do documento recuperado.
+     */
+    public static Recuperacao reproduzir(Path diario, InlineCssTextArea area) throws IOException {
+        Recuperacao recuperacao = null;
+        List<String> tabela = new ArrayList<>();
+        boolean primeiroTrecho = true;
+
+        try (DataInputStream entrada = new DataInputStream(Files.newInputStream(diario))) {
+            byte[] registro;
+            while ((registro = lerRegistro(entrada)) != null) {
+                DataInputStream dados = new DataInputStream(new ByteArrayInputStream(registro));
+                byte tipo = dados.readByte();
+                if (tipo == CABECALHO) {
+                    recuperacao = lerCabecalho(dados);
+                    tabela.clear();
+                    primeiroTrecho = true;
+                    carregarBase(recuperacao, area);
+                } else if (recuperacao == null) {
+                    throw new IOException("Diário sem cabeçalho");
+                } else if (tipo == INSTANTANEO) {
+                    // Tabela de estilos própria do registro (ver codificarInstantaneo)
+                    StyledDocument<String, String, String> trecho = lerParagrafos(dados, new ArrayList<>(), area);
+                    if (primeiroTrecho) {
+                        area.replace(0, area.getLength(), trecho);
+                        primeiroTrecho = false;
+                    } else {
+                        area.appendText("\n");
+                        area.replace(area.getLength(), area.getLength(), trecho);
+                    }
+                } else if (tipo == EDICAO) {
+                    int posicao = CodificacaoBinaria.lerVarintInt(dados);
+                    int removidos = CodificacaoBinaria.lerVarintInt(dados);
+                    StyledDocument<String, String, String> inserido = lerParagrafos(dados, tabela, area);
+                    if (posicao + removidos > area.getLength()) throw new IOException("Edição fora do documento");
+                    area.replace(posicao, posicao + removidos, inserido);
+                } else {
+                    throw new IOException("Registro desconhecido: " + tipo);
+                }
+            }
+        }
+        if (recuperacao == null) throw new IOException("Diário vazio");
+        return recuperacao;
+    }
+
+    /**
+     * Arquivo associado ao documento do diário (null se não houver ou se o diário estiver ilegível)
+     */
+    public static Path arquivoAssociado(Path diario) {
+        try (DataInputStream entrada = new DataInputStream(Files.newInputStream(diario))) {
+            byte[] registro = lerRegistro(entrada);
+            if (registro == null) return null;
+            DataInputStream dados = new DataInputStream(new ByteArrayInputStream(registro));
+            return dados.readByte() == CABECALHO ? lerCabecalho(dados).getCaminho() : null;
+        } catch (IOException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Tira de circulação um diário que não pôde ser reproduzido: ele é renomeado (e deixa de
+     * ser oferecido) para permitir uma recuperação manual. Retorna o novo caminho, ou null
+     * se não foi possível renomeá-lo, caso em que é apagado.
+     */
+    public static Path separar(Path diario) {
+        String nome = diario.getFileName().toString();
+        String base = nome.substring(0, nome.length() - EXTENSAO.length());
+        Path destino = diario.resolveSibling(base + EXTENSAO_FALHA);
+        try {
+            Files.move(diario, destino, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            destino = null;
+            apagar(diario);
+        }
+        apagar(diario.resolveSibling(base + EXTENSAO_TRAVA));
+        return destino;
+    }
+
+    /**
+     * Apaga um diário (e a trava correspondente)
+     */
+    public static void descartar(Path diario) {
+        String nome = diario.getFileName().toString();
+        apagar(diario);
+        apagar(diario.resolveSibling(nome.substring(0, nome.length() - EXTENSAO.length()) + EXTENSAO_TRAVA));
+    }
+
+    /**
+     * Arquivo associado e codificação de um documento recuperado
+     */
+    public static final class Recuperacao {
+        private final Path caminho;
+        private final Charset charset;
+        private final Path base;          // Arquivo base das edições (null = instantâneo)
+        private final long tamanhoBase;
+        private final long modificacaoBase;
+
+        private Recuperacao(Path caminho, Charset charset, Path base, long tamanhoBase, long modificacaoBase) {
+            this.caminho = caminho;
+            this.charset = charset;
+            this.base = base;
+            this.tamanhoBase = tamanhoBase;
+            this.modificacaoBase = modificacaoBase;
+        }
+
+        public Path getCaminho() { return caminho; }
+        public Charset getCharset() { return charset; }
+    }
+
+    /**
+     * Compacta o diário num instantâneo do documento atual
+     */
+    private void compactar() {
+        rotacionar(caminho, charset, false, null, true);
+    }
+
+    /**
+     * Começa um novo arquivo de diário. Os registros ainda não gravados são descartados
+     * (a nova base já os contém) e a tabela de estilos recomeça; o arquivo é montado em
+     * segundo plano e só substitui o anterior depois de sincronizado com o disco.
+     * Com registrar = false o novo diário fica vazio e as alterações deixam de ser registradas.
+     */
+    private void rotacionar(Path caminho, Charset charset, boolean usarArquivo, Future<?> gravacao, boolean registrar) {
+        this.caminho = caminho;
+        this.charset = charset;
+        this.ativo = registrar;
+        this.bytesDesdeRotacao = 0;
+        estilos.clear();
+        // O instantâneo é imutável e obtido sem copiar o texto; só é gravado se a base não for o arquivo
+        StyledDocument<String, String, String> instantaneo = registrar ? documento.get() : null;
+        if (registrar && !usarArquivo) naoSalvo = instantaneo.length() > 0;
+        long novaGeracao;
+        synchronized (this) {
+            pendente.reset();
+            novaGeracao = ++geracao;
+        }
+        try {
+            gravador.execute(() -> criarArquivo(novaGeracao, caminho, charset, usarArquivo, gravacao, instantaneo));
+        } catch (RuntimeException e) {
+            // Diário já encerrado
+        }
+    }
+
+    private void criarArquivo(long novaGeracao, Path caminho, Charset charset, boolean usarArquivo,
+                              Future<?> gravacao, StyledDocument<String, String, String> instantaneo) {
+        boolean base = usarArquivo && caminho != null && concluiu(gravacao);
+        if (usarArquivo && caminho != null && !base) naoSalvo = true;  // A gravação falhou
+        Path temporario = arquivo.resolveSibling(arquivo.getFileName() + ".tmp");
+        try {
+            try (FileChannel novo = FileChannel.open(temporario, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                escreverRegistro(novo, codificarCabecalho(caminho, charset, base));
+                if (!base && instantaneo != null) {
+                    List<Paragraph<String, String, String>> paragrafos = instantaneo.getParagraphs();
+                    for (int inicio = 0; inicio < paragrafos.size(); inicio += PARAGRAFOS_POR_TRECHO) {
+                        List<Paragraph<String, String, String>> trecho =
+                                paragrafos.subList(inicio, Math.min(inicio + PARAGRAFOS_POR_TRECHO, paragrafos.size()));
+                        escreverRegistro(novo, codificarInstantaneo(trecho));
+                    }
+                }
+                novo.force(false);
+            }
+            fecharCanal();
+            try {
+                Files.move(temporario, arquivo, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temporario, arquivo, StandardCopyOption.REPLACE_EXISTING);
+            }
+            FileChannel aberto = FileChannel.open(arquivo, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+            synchronized (this) {
+                canal = aberto;
+                geracaoGravada = novaGeracao;
+            }
+        } catch (IOException e) {
+            // Sem espaço ou sem permissão: as edições seguem sem diário até o próximo reinício
+            apagar(temporario);
+        }
+    }
+
+    /**
+     * Grava os registros acumulados e sincroniza com o disco (thread de gravação)
+     */
+    private void gravarPendentes() {
+        byte[] bytes;
+        FileChannel destino;
+        synchronized (this) {
+            // Registros de uma geração cujo arquivo ainda não foi criado esperam a rotação
+            if (pendente.size() == 0 || geracaoGravada != geracao || canal == null) return;
+            bytes = pendente.toByteArray();
+            pendente.reset();
+            destino = canal;
+        }
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(bytes);
+            while (buffer.hasRemaining()) destino.write(buffer);
+            destino.force(false);
+        } catch (IOException e) {
+            // Registros perdidos: o próximo reinício ou compactação recria o diário
+        }
+    }
+
+    /**
+     * Enquadra o registro (tamanho, CRC32) e o acumula para a próxima gravação
+     */
+    private int acrescentar(byte[] registro) {
+        byte[] quadro = enquadrar(registro);
+        synchronized (this) {
+            pendente.write(quadro, 0, quadro.length);
+        }
+        return quadro.length;
+    }
+
+    private static byte[] enquadrar(byte[] registro) {
+        CRC32 crc = new CRC32();
+        crc.update(registro);
+        ByteBuffer quadro = ByteBuffer.allocate(8 + registro.length);
+        quadro.putInt(registro.length).putInt((int) crc.getValue()).put(registro);
+        return quadro.array();
+    }
+
+    private static void escreverRegistro(FileChannel destino, byte[] registro) throws IOException {
+        ByteBuffer quadro = ByteBuffer.wrap(enquadrar(registro));
+        while (quadro.hasRemaining()) destino.write(quadro);
+    }
+
+    /**
+     * Lê o próximo registro; null no fim do diário ou num registro incompleto/corrompido
+     */
+    private static byte[] lerRegistro(DataInputStream entrada) throws IOException {
+        try {
+            int tamanho = entrada.readInt();
+            int crcEsperado = entrada.readInt();
+            if (tamanho <= 0 || tamanho > TAMANHO_MAXIMO_REGISTRO) return null;
+            byte[] registro = new byte[tamanho];
+            entrada.readFully(registro);
+            CRC32 crc = new CRC32();
+            crc.update(registro);
+            return (int) crc.getValue() == crcEsperado ? registro : null;
+        } catch (EOFException e) {
+            return null;
+        }
+    }
+
+    private static byte[] codificarCabecalho(Path caminho, Charset charset, boolean base) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream saida = new DataOutputStream(bytes);
+        saida.writeByte(CABECALHO);
+        CodificacaoBinaria.escreverTexto(saida, caminho != null ? caminho.toAbsolutePath().toString() : "");
+        CodificacaoBinaria.escreverTexto(saida, charset.name());
+        saida.writeBoolean(base);
+        if (base) {
+            saida.writeLong(Files.size(caminho));
+            saida.writeLong(Files.getLastModifiedTime(caminho).toMillis());
+        }
+        return bytes.toByteArray();
+    }
+
+    private static Recuperacao lerCabecalho(DataInputStream entrada) throws IOException {
+        String caminho = CodificacaoBinaria.lerTexto(entrada);
+        Charset charset = Charset.forName(CodificacaoBinaria.lerTexto(entrada));
+        Path arquivo = caminho.isEmpty() ? null : Paths.get(caminho);
+        if (!entrada.readBoolean()) return new Recuperacao(arquivo, charset, null, 0, 0);
+        return new Recuperacao(arquivo, charset, arquivo, entrada.readLong(), entrada.readLong());
+    }
+
+    /**
+     * Carrega na área o arquivo base (texto simples ou formato rico), que precisa estar
+     * como estava quando o diário começou; sem base, a área fica vazia
+     */
+    private static void carregarBase(Recuperacao recuperacao, InlineCssTextArea area) throws IOException {
+        Path base = recuperacao.base;
+        if (base == null) {
+            area.replaceText("");
+            return;
+        }
+        if (!Files.isRegularFile(base) || Files.size(base) != recuperacao.tamanhoBase
+                || Files.getLastModifiedTime(base).toMillis() != recuperacao.modificacaoBase) {
+            throw new IOException("O arquivo " + base + " foi alterado depois das edições registradas.");
+        }
+        if (FormatoRico.ehArquivoRico(base)) {
+            FormatoRico.ler(base, area);
+            return;
+        }
+        String texto = new String(Files.readAllBytes(base), recuperacao.charset);
+        if (texto.startsWith("\uFEFF")) texto = texto.substring(1);
+        area.replaceText(texto.replace("\r\n", "\n").replace('\r', '\n'));  // Como no CarregadorTexto
+    }
+
+    /**
+     * Instantâneo de um trecho de parágrafos, com tabela de estilos própria: é codificado
+     * em segundo plano, sem disputar a tabela usada pelos registros de edição
+     */
+    private static byte[] codificarInstantaneo(List<Paragraph<String, String, String>> paragrafos) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream saida = new DataOutputStream(bytes);
+        saida.writeByte(INSTANTANEO);
+        codificarParagrafos(saida, paragrafos, new HashMap<>());
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Parágrafos como: estilo do parágrafo, texto e trechos de estilo (comprimento, estilo).
+     * Um estilo é escrito pelo índice na tabela; na primeira vez, o índice novo é seguido do CSS.
+     */
+    private static void codificarParagrafos(DataOutputStream saida, List<Paragraph<String, String, String>> paragrafos,
+                                            Map<String, Integer> tabela) throws IOException {
+        CodificacaoBinaria.escreverVarint(saida, paragrafos.size());
+        for (Paragraph<String, String, String> paragrafo : paragrafos) {
+            escreverEstilo(saida, paragrafo.getParagraphStyle(), tabela);
+            CodificacaoBinaria.escreverTexto(saida, paragrafo.getText());
+            StyleSpans<String> trechos = paragrafo.getStyleSpans();
+            CodificacaoBinaria.escreverVarint(saida, trechos.getSpanCount());
+            for (StyleSpan<String> trecho : trechos) {
+                CodificacaoBinaria.escreverVarint(saida, trecho.getLength());
+                escreverEstilo(saida, trecho.getStyle(), tabela);
+            }
+        }
+    }
+
+    private static StyledDocument<String, String, String> lerParagrafos(DataInputStream entrada, List<String> tabela,
+                                                                      InlineCssTextArea area) throws IOException {
+        int quantidade = CodificacaoBinaria.lerVarintInt(entrada);
+        ReadOnlyStyledDocumentBuilder<String, String, String> documento =
+                new ReadOnlyStyledDocumentBuilder<>(area.getSegOps(), "");
+        for (int i = 0; i < quantidade; i++) {
+            String estiloParagrafo = lerEstilo(entrada, tabela);
+            String texto = CodificacaoBinaria.lerTexto(entrada);
+            int quantidadeTrechos = CodificacaoBinaria.lerVarintInt(entrada);
+            StyleSpansBuilder<String> trechos = new StyleSpansBuilder<>(Math.max(1, quantidadeTrechos));
+            for (int t = 0; t < quantidadeTrechos; t++) {
+                int comprimento = CodificacaoBinaria.lerVarintInt(entrada);
+                trechos.add(lerEstilo(entrada, tabela), comprimento);
+            }
+            if (quantidadeTrechos == 0) trechos.add("", texto.length());
+            documento.addParagraph(texto, trechos.create(), estiloParagrafo);
+        }
+        if (quantidade == 0) documento.addParagraph("", "", "");
+        return documento.build();
+    }
+
+    private static void escreverEstilo(DataOutputStream saida, String css, Map<String, Integer> tabela) throws IOException {
+        Integer indice = tabela.get(css);
+        if (indice != null) {
+            CodificacaoBinaria.escreverVarint(saida, indice);
+            return;
+        }
+        CodificacaoBinaria.escreverVarint(saida, tabela.size());
+        CodificacaoBinaria.escreverTexto(saida, css);
+        tabela.put(css, tabela.size());
+    }
+
+    private static String lerEstilo(DataInputStream entrada, List<String> tabela) throws IOException {
+        int indice = CodificacaoBinaria.lerVarintInt(entrada);
+        if (indice == tabela.size()) tabela.add(CodificacaoBinaria.lerTexto(entrada));
+        else if (indice > tabela.size()) throw new IOException("Estilo inexistente: " + indice);
+        return tabela.get(indice);
+    }
+
+    private static boolean concluiu(Future<?> gravacao) {
+        if (gravacao == null) return true;
+        try {
+            gravacao.get();
+            return !gravacao.isCancelled();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (ExecutionException | RuntimeException e) {
+            return false;
+        }
+    }
+
+    private static boolean sessaoAtiva(Path arquivoTrava) {
+        if (!Files.exists(arquivoTrava)) return false;
+        try (FileChannel canal = FileChannel.open(arquivoTrava, StandardOpenOption.WRITE)) {
+            FileLock teste = canal.tryLock();
+            if (teste == null) return true;
+            teste.release();
+            return false;
+        } catch (OverlappingFileLockException e) {
+            return true;  // Travado por esta própria aplicação
+        } catch (IOException e) {
+            return true;  // Na dúvida, não mexe no diário de outra sessão
+        }
+    }
+
+    private synchronized void fecharCanal() {
+        if (canal == null) return;
+        try {
+            canal.close();
+        } catch (IOException e) {
+            // Ignora erros ao fechar
+        }
+        canal = null;
+    }
+
+    private static void apagar(Path caminho) {
+        try {
+            Files.deleteIfExists(caminho);
+        } catch (IOException e) {
+            // Ignora: o diário é descartado na próxima recuperação
+        }
+    }
+
+    private static long ultimaModificacao(Path arquivo) {
+        try {
+            return Files.getLastModifiedTime(arquivo).toMillis();
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+}
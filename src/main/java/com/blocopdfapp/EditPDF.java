@@ -1,21 +1,27 @@
 package com.blocopdfapp;
 
+import javafx.application.Platform;
+import javafx.geometry.BoundingBox;
+import javafx.geometry.Bounds;
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
 import javafx.scene.Node;
 import javafx.scene.control.*;
 import javafx.scene.image.Image;
 import javafx.scene.image.ImageView;
+import javafx.scene.input.KeyCode;
 import javafx.scene.layout.BorderPane;
 import javafx.scene.layout.HBox;
+import javafx.scene.layout.StackPane;
 import javafx.scene.layout.VBox;
+import org.apache.pdfbox.io.MemoryUsageSetting;
 import org.apache.pdfbox.pdmodel.PDDocument;
-import org.apache.pdfbox.rendering.PDFRenderer;
-import javafx.embed.swing.SwingFXUtils;
+import org.apache.pdfbox.pdmodel.PDPage;
 
-import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
 
 /**
  * Componente para visualização de arquivos PDF
@@ -26,11 +32,61 @@ public class EditPDF {
     private final ScrollPane scrollPane;
     private final VBox pdfContainer;
     private PDDocument document;
-    private PDFRenderer renderer;
     private int currentPage = 0;
     private double currentZoom = 1.0;
     private int totalPages = 0;
 
+    // Renderização assíncrona (fora da JavaFX Application Thread)
+    private final RenderizadorPDF renderizador = new RenderizadorPDF();
+
+    // Cache das páginas já renderizadas (limitado em bytes)
+    private static final long LIMITE_CACHE_PADRAO = 128L * 1024 * 1024;
+    private final CachePaginas cachePaginas = new CachePaginas(LIMITE_CACHE_PADRAO);
+    private volatile long documentoId = 0;  // Identifica o documento atual nas chaves do cache
+
+    // Antecipação (prefetch) das páginas vizinhas
+    private int paginasAntecipadas = 3;  // Páginas pré-renderizadas no sentido da leitura
+    private int direcaoLeitura = 1;      // +1 avançando, -1 voltando
+
+    // Modo de rolagem contínua (virtualizado)
+    private final VisualizacaoContinua visualizacaoContinua = new VisualizacaoContinua(renderizador, cachePaginas);
+    private boolean modoContinuo = false;
+    private float[] largurasPaginas = new float[0];  // Dimensões das páginas em pontos, já rotacionadas
+    private float[] alturasPaginas = new float[0];
+    private boolean tamanhosCompletos = false;       // Falso enquanto as dimensões são estimadas
+
+    // Carregamento: memória principal máxima antes de usar arquivo temporário
+    private static final long LIMITE_MEMORIA_PDF_PADRAO = 64L * 1024 * 1024;
+    private long limiteMemoriaPDF = LIMITE_MEMORIA_PDF_PADRAO;
+
+    // Cache em disco das páginas renderizadas, mantido entre sessões
+    private static final long LIMITE_CACHE_DISCO_PADRAO = 512L * 1024 * 1024;
+    private volatile CacheDisco cacheDisco;
+
+    // Barra lateral de miniaturas
+    private final PainelMiniaturas painelMiniaturas = new PainelMiniaturas(renderizador);
+    private boolean miniaturasVisiveis = false;
+
+    // Exibição em blocos (tiles) para páginas grandes em zoom alto
+    private static final long LIMITE_PIXELS_PAGINA_INTEIRA = 8_000_000L;  // ~32 MB em ARGB
+    private final VisualizacaoBlocos visualizacaoBlocos = new VisualizacaoBlocos(renderizador, cachePaginas);
+    private Node camadaBlocos;  // Diferente de null enquanto a página é exibida em blocos
+
+    // Página atualmente na tela no modo de página única
+    private ImageView imagemExibida;
+    private final CamadaDestaques destaquesPagina = new CamadaDestaques();
+    private int paginaExibida = -1;
+    private double zoomExibido;
+
+    // Busca de texto: o índice é montado em segundo plano depois que o documento abre
+    private final IndexadorTextoPDF indexador = new IndexadorTextoPDF();
+    private IndiceTextoPDF indice;
+    private int paginasIndexadas = 0;
+    private List<IndiceTextoPDF.Ocorrencia> ocorrencias = List.of();
+    private int ocorrenciaAtual = -1;
+    private TextField campoBusca;
+    private Label resultadoBusca;
+
     // Componentes da interface
     private Label pageLabel;
     private ComboBox<String> zoomCombo;
@@ -57,11 +113,24 @@ public class EditPDF {
         
         // Adiciona menu bar ao topo
         menuBar = criarMenuBar();
-        VBox topContainer = new VBox(menuBar);
+        VBox topContainer = new VBox(menuBar, criarBarraBusca());
         root.setTop(topContainer);
         
         root.setCenter(scrollPane);
         root.setBottom(createToolBar());
+
+        // Em blocos, a rolagem decide quais blocos são rasterizados
+        scrollPane.hvalueProperty().addListener((obs, oldVal, newVal) -> atualizarBlocosVisiveis());
+        scrollPane.vvalueProperty().addListener((obs, oldVal, newVal) -> atualizarBlocosVisiveis());
+        scrollPane.viewportBoundsProperty().addListener((obs, oldVal, newVal) -> atualizarBlocosVisiveis());
+
+        painelMiniaturas.setOnPaginaSelecionada(this::goToPage);
+
+        visualizacaoContinua.setOnPaginaVisivel(pagina -> {
+            currentPage = pagina;
+            atualizarLabelPagina();
+        });
+        visualizacaoContinua.setDestaques(this::destaquesDaPagina);
     }
 
     // Setters para os callbacks
@@ -69,6 +138,41 @@ public class EditPDF {
     public void setOnExportarPDF(Runnable onExportarPDF) { this.onExportarPDF = onExportarPDF; }
     public void setOnSobre(Runnable onSobre) { this.onSobre = onSobre; }
 
+    /**
+     * Define o orçamento de memória (em bytes) do cache de páginas renderizadas
+     */
+    public void setLimiteCacheBytes(long limiteBytes) { cachePaginas.setLimiteBytes(limiteBytes); }
+
+    /**
+     * Define quanta memória principal (em bytes) o PDFBox pode usar por documento
+     * antes de passar a usar um arquivo temporário
+     */
+    public void setLimiteMemoriaPDF(long limiteBytes) { this.limiteMemoriaPDF = limiteBytes; }
+
+    /**
+     * Ativa ou desativa o cache em disco das páginas e miniaturas renderizadas
+     * (desativado por padrão). Vale a partir do próximo documento aberto.
+     */
+    public void setCacheDiscoAtivo(boolean ativo) {
+        if (ativo == (cacheDisco != null)) return;
+        if (ativo) {
+            try {
+                cacheDisco = new CacheDisco(CacheDisco.diretorioPadrao(), LIMITE_CACHE_DISCO_PADRAO);
+            } catch (IOException e) {
+                cacheDisco = null;  // Diretório indisponível: continua só com o cache em memória
+            }
+        } else {
+            cacheDisco.encerrar();
+            cacheDisco = null;
+        }
+        renderizador.setCacheDisco(cacheDisco);
+    }
+
+    /**
+     * Define quantas páginas são pré-renderizadas no sentido da leitura (0 desativa)
+     */
+    public void setPaginasAntecipadas(int paginasAntecipadas) { this.paginasAntecipadas = Math.max(0, paginasAntecipadas); }
+
     /**
      * Cria menu bar para o visualizador PDF
      */
@@ -79,6 +183,8 @@ public class EditPDF {
         Menu menuArquivo = new Menu("Arquivo");
         MenuItem abrirPDFItem = new MenuItem("Abrir PDF...");
         MenuItem exportarPDFItem = new MenuItem("Exportar para PDF...");
+        CheckMenuItem cacheDiscoItem = new CheckMenuItem("Guardar páginas em disco");
+        cacheDiscoItem.setSelected(cacheDisco != null);
         
         // Menu Ajuda
         Menu menuAjuda = new Menu("Ajuda");
@@ -88,14 +194,54 @@ public class EditPDF {
         abrirPDFItem.setOnAction(e -> { if (onAbrirPDF != null) onAbrirPDF.run(); });
         exportarPDFItem.setOnAction(e -> { if (onExportarPDF != null) onExportarPDF.run(); });
         sobreItem.setOnAction(e -> { if (onSobre != null) onSobre.run(); });
+        cacheDiscoItem.setOnAction(e -> {
+            setCacheDiscoAtivo(cacheDiscoItem.isSelected());
+            cacheDiscoItem.setSelected(cacheDisco != null);  // Diretório indisponível
+        });
 
-        menuArquivo.getItems().addAll(abrirPDFItem, exportarPDFItem);
+        menuArquivo.getItems().addAll(abrirPDFItem, exportarPDFItem, new SeparatorMenuItem(), cacheDiscoItem);
         menuAjuda.getItems().add(sobreItem);
         
         menuBar.getMenus().addAll(menuArquivo, menuAjuda);
         return menuBar;
     }
 
+    /**
+     * Cria a barra de busca: a busca acontece a cada tecla; Enter e Shift+Enter
+     * percorrem as ocorrências, Esc limpa
+     */
+    private Node criarBarraBusca() {
+        HBox barra = new HBox(5);
+        barra.setAlignment(Pos.CENTER_LEFT);
+        barra.setPadding(new Insets(5));
+        barra.setStyle("-fx-background-color: #e8e8e8;");
+
+        campoBusca = new TextField();
+        campoBusca.setPromptText("Buscar no PDF");
+        campoBusca.setPrefColumnCount(20);
+        Button btnAnterior = new Button("▲");
+        btnAnterior.setTooltip(new Tooltip("Ocorrência anterior (Shift+Enter)"));
+        Button btnProxima = new Button("▼");
+        btnProxima.setTooltip(new Tooltip("Próxima ocorrência (Enter)"));
+        resultadoBusca = new Label();
+
+        campoBusca.textProperty().addListener((obs, oldVal, newVal) -> buscar());
+        campoBusca.setOnKeyPressed(e -> {
+            if (e.getCode() == KeyCode.ENTER) {
+                irParaOcorrencia(e.isShiftDown() ? -1 : 1);
+                e.consume();
+            } else if (e.getCode() == KeyCode.ESCAPE) {
+                campoBusca.clear();
+                e.consume();
+            }
+        });
+        btnAnterior.setOnAction(e -> irParaOcorrencia(-1));
+        btnProxima.setOnAction(e -> irParaOcorrencia(1));
+
+        barra.getChildren().addAll(new Label("Buscar:"), campoBusca, btnAnterior, btnProxima, resultadoBusca);
+        return barra;
+    }
+
     /**
      * Cria a barra de ferramentas inferior
      */
@@ -122,10 +268,20 @@ public class EditPDF {
             String zoomValue = zoomCombo.getValue().replace("%", "");
             currentZoom = Double.parseDouble(zoomValue) / 100.0;
             if (document != null) {
-                renderPage(currentPage);
+                exibirPaginaAtual();
             }
         });
 
+        // Alterna entre página única e rolagem contínua
+        ToggleButton btnContinuo = new ToggleButton("Contínuo");
+        btnContinuo.setTooltip(new Tooltip("Rolagem contínua por todas as páginas"));
+        btnContinuo.setOnAction(e -> setModoContinuo(btnContinuo.isSelected()));
+
+        // Mostra ou oculta a barra de miniaturas
+        ToggleButton btnMiniaturas = new ToggleButton("Miniaturas");
+        btnMiniaturas.setTooltip(new Tooltip("Barra lateral com miniaturas das páginas"));
+        btnMiniaturas.setOnAction(e -> setMiniaturasVisiveis(btnMiniaturas.isSelected()));
+
         // Botões de ação rápida
         Button btnAbrir = new Button("Abrir PDF");
         Button btnExportar = new Button("Exportar");
@@ -136,7 +292,7 @@ public class EditPDF {
         toolBar.getChildren().addAll(
             btnAbrir, new Separator(),
             prevButton, pageLabel, nextButton, new Separator(),
-            new Label("Zoom:"), zoomCombo, new Separator(),
+            new Label("Zoom:"), zoomCombo, btnContinuo, btnMiniaturas, new Separator(),
             btnExportar
         );
 
@@ -148,15 +304,233 @@ public class EditPDF {
      */
     public void loadPDF(File file) {
         close(); // Fecha PDF anterior se existir
-        try {
-            document = PDDocument.load(file);
-            renderer = new PDFRenderer(document);
-            totalPages = document.getNumberOfPages();
-            currentPage = 0;
-            renderPage(currentPage);
-        } catch (IOException e) {
-            showError("Erro ao carregar PDF", e.getMessage());
-            close();
+        long idCarregamento = ++documentoId;
+        pageLabel.setText("Carregando...");
+
+        // A abertura acontece na thread de renderização: o PDFBox lê o arquivo sob demanda
+        // e usa memória mista (heap até o limite, depois arquivo temporário)
+        MemoryUsageSetting memoria = MemoryUsageSetting.setupMixed(limiteMemoriaPDF);
+        renderizador.executar(() -> {
+            try {
+                PDDocument novoDocumento = PDDocument.load(file, memoria);
+                int paginas = novoDocumento.getNumberOfPages();
+                float[] primeira = paginas > 0 ? RenderizadorPDF.tamanhoPagina(novoDocumento.getPage(0)) : new float[] {0, 0};
+                Platform.runLater(() -> documentoCarregado(idCarregamento, file, novoDocumento, paginas, primeira));
+            } catch (IOException e) {
+                Platform.runLater(() -> {
+                    if (documentoId != idCarregamento) return;
+                    pageLabel.setText("Página -/-");
+                    showError("Erro ao carregar PDF", e.getMessage());
+                });
+            }
+        });
+    }
+
+    /**
+     * Calcula o hash do arquivo em segundo plano para que as páginas já vistas em outra
+     * sessão venham do cache em disco. A primeira página não espera a leitura do arquivo
+     * inteiro: até o hash ficar pronto, as páginas são renderizadas sem o cache em disco.
+     */
+    private void identificarNoCacheDisco(long idCarregamento, File file, PDDocument novoDocumento) {
+        CacheDisco disco = cacheDisco;
+        if (disco == null) return;
+        disco.identificar(file, hash -> Platform.runLater(() -> {
+            // Na thread da interface: fecharDocumento, se houver, já foi enfileirado antes
+            if (documentoId == idCarregamento) renderizador.identificarDocumento(novoDocumento, hash);
+        }));
+    }
+
+    /**
+     * Exibe a primeira página assim que o documento é aberto. As dimensões das demais
+     * páginas começam estimadas pela primeira e são lidas em segundo plano.
+     */
+    private void documentoCarregado(long idCarregamento, File file, PDDocument novoDocumento, int paginas,
+                                    float[] primeira) {
+        if (documentoId != idCarregamento) {  // Outro arquivo foi aberto enquanto este carregava
+            renderizador.fecharDocumento(novoDocumento);
+            return;
+        }
+        document = novoDocumento;
+        totalPages = paginas;
+        currentPage = 0;
+        direcaoLeitura = 1;
+        largurasPaginas = new float[paginas];
+        alturasPaginas = new float[paginas];
+        Arrays.fill(largurasPaginas, primeira[0]);
+        Arrays.fill(alturasPaginas, primeira[1]);
+        tamanhosCompletos = false;
+        exibirPaginaAtual();
+        exibirMiniaturas();
+        identificarNoCacheDisco(idCarregamento, file, novoDocumento);
+
+        renderizador.executarEmSegundoPlano(() -> {
+            if (documentoId != idCarregamento) return;
+            float[][] tamanhos = calcularTamanhosPaginas(novoDocumento, paginas);
+            Platform.runLater(() -> tamanhosCalculados(idCarregamento, tamanhos));
+        });
+
+        paginasIndexadas = 0;
+        atualizarResultadoBusca();
+        indexador.indexar(file, paginas, limiteMemoriaPDF,
+            lidas -> Platform.runLater(() -> {
+                if (documentoId != idCarregamento || indice != null) return;
+                paginasIndexadas = lidas;
+                atualizarResultadoBusca();
+            }),
+            novoIndice -> Platform.runLater(() -> {
+                if (documentoId != idCarregamento) return;
+                indice = novoIndice;
+                buscar();  // Consulta digitada enquanto o texto era extraído
+            }));
+    }
+
+    /**
+     * Busca o texto do campo no índice e vai para a primeira ocorrência a partir da página atual
+     */
+    private void buscar() {
+        String consulta = campoBusca.getText();
+        ocorrencias = indice != null && !consulta.isBlank() ? indice.buscar(consulta) : List.of();
+        ocorrenciaAtual = -1;
+        if (!ocorrencias.isEmpty()) {
+            int primeira = primeiraOcorrencia(currentPage);
+            ocorrenciaAtual = primeira < ocorrencias.size() ? primeira : 0;
+            mostrarOcorrencia();
+        } else {
+            atualizarDestaques();
+        }
+        atualizarResultadoBusca();
+    }
+
+    /**
+     * Avança (1) ou volta (-1) uma ocorrência, dando a volta no documento
+     */
+    private void irParaOcorrencia(int sentido) {
+        if (ocorrencias.isEmpty()) return;
+        ocorrenciaAtual = Math.floorMod(ocorrenciaAtual + sentido, ocorrencias.size());
+        mostrarOcorrencia();
+        atualizarResultadoBusca();
+    }
+
+    private void mostrarOcorrencia() {
+        int pagina = ocorrencias.get(ocorrenciaAtual).getPagina();
+        if (pagina != currentPage) {
+            goToPage(pagina);  // Os destaques são desenhados quando a página aparece
+        } else if (!modoContinuo && paginaExibida != pagina) {
+            renderPage(pagina);
+        }
+        atualizarDestaques();
+    }
+
+    /**
+     * Índice da primeira ocorrência na página indicada ou depois dela
+     */
+    private int primeiraOcorrencia(int pagina) {
+        int inicio = 0, fim = ocorrencias.size();
+        while (inicio < fim) {
+            int meio = (inicio + fim) >>> 1;
+            if (ocorrencias.get(meio).getPagina() < pagina) inicio = meio + 1;
+            else fim = meio;
+        }
+        return inicio;
+    }
+
+    /**
+     * Retângulos das ocorrências da página: {demais ocorrências, ocorrência atual ou null}
+     */
+    private float[][] destaquesDaPagina(int pagina) {
+        if (indice == null || ocorrencias.isEmpty()) return null;
+        float[] demais = new float[0];
+        float[] atual = null;
+        for (int i = primeiraOcorrencia(pagina); i < ocorrencias.size() && ocorrencias.get(i).getPagina() == pagina; i++) {
+            float[] retangulos = indice.retangulos(ocorrencias.get(i));
+            if (i == ocorrenciaAtual) {
+                atual = retangulos;
+            } else {
+                float[] juntos = Arrays.copyOf(demais, demais.length + retangulos.length);
+                System.arraycopy(retangulos, 0, juntos, demais.length, retangulos.length);
+                demais = juntos;
+            }
+        }
+        return new float[][] {demais, atual};
+    }
+
+    /**
+     * Redesenha os destaques da busca no modo ativo
+     */
+    private void atualizarDestaques() {
+        if (modoContinuo) {
+            visualizacaoContinua.atualizarDestaques();
+            return;
+        }
+        float[][] destaques = imagemExibida != null ? destaquesDaPagina(paginaExibida) : null;
+        if (destaques == null) {
+            destaquesPagina.limpar();
+            return;
+        }
+        double escala = imagemExibida.getFitWidth() / largurasPaginas[paginaExibida];
+        destaquesPagina.exibir(destaques[0], destaques[1], escala);
+        if (destaques[1] != null && destaques[1].length > 0) {
+            double y = destaques[1][1] * escala;
+            Platform.runLater(() -> rolarAte(y));  // Após o layout da página
+        }
+    }
+
+    /**
+     * Rola a página exibida para que a altura y (em pixels da imagem) fique no meio da tela
+     */
+    private void rolarAte(double y) {
+        double visivel = scrollPane.getViewportBounds().getHeight();
+        double total = pdfContainer.getHeight();
+        if (total <= visivel) return;
+        scrollPane.setVvalue(Math.max(0, Math.min(1, (y - visivel / 2) / (total - visivel))));
+    }
+
+    private void atualizarResultadoBusca() {
+        String texto;
+        if (document == null || campoBusca.getText().isBlank()) {
+            texto = "";
+        } else if (indice == null) {
+            texto = String.format("Indexando texto... %d%%", totalPages == 0 ? 0 : paginasIndexadas * 100 / totalPages);
+        } else if (ocorrencias.isEmpty()) {
+            texto = "Nenhuma ocorrência";
+        } else {
+            texto = String.format("%d de %d", ocorrenciaAtual + 1, ocorrencias.size());
+        }
+        if (indice != null && !texto.isEmpty() && indice.getTotalPaginasSemTexto() > 0) {
+            // Faixas cuja extração falhou: a busca não as cobre
+            texto += String.format(" (%s %s sem texto)", indice.getTotalPaginasSemTexto() == 1 ? "página" : "páginas",
+                    indice.descreverPaginasSemTexto());
+        }
+        resultadoBusca.setText(texto);
+    }
+
+    private void tamanhosCalculados(long idCarregamento, float[][] tamanhos) {
+        if (documentoId != idCarregamento) return;
+        largurasPaginas = tamanhos[0];
+        alturasPaginas = tamanhos[1];
+        tamanhosCompletos = true;
+        if (modoContinuo) {
+            exibirPaginaAtual();  // A rolagem contínua aguardava as dimensões reais
+        }
+        exibirMiniaturas();
+    }
+
+    /**
+     * Mostra ou oculta a barra lateral de miniaturas
+     */
+    private void setMiniaturasVisiveis(boolean visiveis) {
+        miniaturasVisiveis = visiveis;
+        root.setLeft(visiveis ? painelMiniaturas.getView() : null);
+        if (visiveis) {
+            exibirMiniaturas();
+        } else {
+            painelMiniaturas.limpar();  // Libera as miniaturas enquanto a barra está oculta
+        }
+    }
+
+    private void exibirMiniaturas() {
+        if (miniaturasVisiveis && document != null) {
+            painelMiniaturas.exibir(document, documentoId, largurasPaginas, alturasPaginas, currentPage);
         }
     }
 
@@ -165,39 +539,231 @@ public class EditPDF {
      */
     private void goToPage(int page) {
         if (page >= 0 && page < totalPages) {
+            if (page != currentPage) {
+                direcaoLeitura = page > currentPage ? 1 : -1;
+            }
             currentPage = page;
+            if (modoContinuo) {
+                visualizacaoContinua.irPara(currentPage);
+            } else {
+                renderPage(currentPage);
+            }
+        }
+    }
+
+    /**
+     * Ativa ou desativa o modo de rolagem contínua
+     */
+    private void setModoContinuo(boolean continuo) {
+        if (modoContinuo == continuo) return;
+        modoContinuo = continuo;
+        if (continuo) {
+            renderizador.cancelar();
+            limparPaginaExibida();
+        } else {
+            visualizacaoContinua.limpar();
+        }
+        root.setCenter(continuo ? visualizacaoContinua.getView() : scrollPane);
+        if (document != null) {
+            exibirPaginaAtual();
+        }
+    }
+
+    /**
+     * Exibe a página atual no modo ativo (página única ou contínuo)
+     */
+    private void exibirPaginaAtual() {
+        if (modoContinuo) {
+            if (!tamanhosCompletos) {
+                pageLabel.setText("Preparando páginas...");
+                return;  // Exibida quando as dimensões de todas as páginas forem lidas
+            }
+            visualizacaoContinua.exibir(document, documentoId, largurasPaginas, alturasPaginas,
+                                        (float) currentZoom, currentPage);
+            atualizarLabelPagina();
+        } else {
             renderPage(currentPage);
         }
     }
 
     /**
-     * Renderiza a página atual do PDF
+     * Lê as dimensões de todas as páginas (sem renderizá-las), na thread de renderização
+     */
+    private static float[][] calcularTamanhosPaginas(PDDocument documento, int paginas) {
+        float[][] tamanhos = new float[2][paginas];
+        int i = 0;
+        for (PDPage page : documento.getPages()) {
+            if (i >= paginas) break;
+            float[] tamanho = RenderizadorPDF.tamanhoPagina(page);
+            tamanhos[0][i] = tamanho[0];
+            tamanhos[1][i] = tamanho[1];
+            i++;
+        }
+        return tamanhos;
+    }
+
+    private void limparPaginaExibida() {
+        pdfContainer.getChildren().clear();
+        destaquesPagina.limpar();
+        if (imagemExibida != null) {
+            ImagemPagina.exibir(imagemExibida, null);  // Permite que o buffer volte ao pool
+        }
+        imagemExibida = null;
+        paginaExibida = -1;
+        if (camadaBlocos != null) {
+            visualizacaoBlocos.limpar();
+            camadaBlocos = null;
+            scrollPane.setFitToWidth(true);
+        }
+    }
+
+    /**
+     * Escala em que a página é exibida no modo de página única
+     * (mesma regra do ajuste de largura usado em exibirImagem)
+     */
+    private float escalaExibicao(int pageIndex) {
+        double scrollWidth = scrollPane.getWidth() - 20;
+        if (scrollWidth > 0) {
+            return (float) (scrollWidth * currentZoom / largurasPaginas[pageIndex]);
+        }
+        return (float) currentZoom;
+    }
+
+    /**
+     * Exibe a página em blocos: nada é rasterizado até se saber a região visível
+     */
+    private void exibirEmBlocos(int pageIndex, float escala) {
+        renderizador.cancelar();
+        limparPaginaExibida();
+        scrollPane.setFitToWidth(false);  // Permite rolagem horizontal pela página ampliada
+        camadaBlocos = visualizacaoBlocos.exibir(document, documentoId, pageIndex,
+                largurasPaginas[pageIndex], alturasPaginas[pageIndex], escala);
+        pdfContainer.getChildren().add(camadaBlocos);
+        scrollPane.setHvalue(0.0);
+        scrollPane.setVvalue(0.0);
+        Platform.runLater(this::atualizarBlocosVisiveis);  // Após o layout da nova camada
+    }
+
+    /**
+     * Pede os blocos que cobrem a área visível do ScrollPane
+     */
+    private void atualizarBlocosVisiveis() {
+        if (camadaBlocos == null || camadaBlocos.getScene() == null || scrollPane.getContent() == null) return;
+        // viewportBounds exclui barras de rolagem e bordas; minX/minY são o deslocamento da rolagem (negativo)
+        Bounds viewport = scrollPane.getViewportBounds();
+        Node conteudo = scrollPane.getContent();
+        Bounds area = new BoundingBox(-viewport.getMinX(), -viewport.getMinY(), viewport.getWidth(), viewport.getHeight());
+        Bounds visivel = camadaBlocos.sceneToLocal(conteudo.localToScene(area));
+        visualizacaoBlocos.atualizar(visivel);
+    }
+
+    private void atualizarLabelPagina() {
+        pageLabel.setText(String.format("Página %d/%d", currentPage + 1, totalPages));
+        painelMiniaturas.marcarPaginaAtual(currentPage);
+    }
+
+    /**
+     * Solicita a renderização da página em segundo plano.
+     * Pedidos anteriores ainda pendentes são descartados.
      */
     private void renderPage(int pageIndex) {
-        if (renderer == null || pageIndex < 0 || pageIndex >= totalPages) return;
-        try {
-            // Renderiza a página com o zoom atual
-            BufferedImage bufferedImage = renderer.renderImage(pageIndex, (float) currentZoom);
-            Image fxImage = SwingFXUtils.toFXImage(bufferedImage, null);
-            
-            ImageView imageView = new ImageView(fxImage);
-            imageView.setPreserveRatio(true);
-            
-            // Ajusta o tamanho baseado no zoom e na largura disponível
-            double scrollWidth = scrollPane.getWidth() - 20;
-            if (scrollWidth > 0) {
-                imageView.setFitWidth(scrollWidth * currentZoom);
-            }
+        if (document == null || pageIndex < 0 || pageIndex >= totalPages) return;
+
+        // Atualiza o label imediatamente, antes da imagem ficar pronta
+        atualizarLabelPagina();
 
-            pdfContainer.getChildren().clear();
-            pdfContainer.getChildren().add(imageView);
-            
-            // Atualiza o label da página
-            pageLabel.setText(String.format("Página %d/%d", pageIndex + 1, totalPages));
-            scrollPane.setVvalue(0.0); // Volta ao topo
-        } catch (IOException e) {
-            showError("Erro ao renderizar PDF", e.getMessage());
+        // Página grande demais para uma única imagem: renderiza só os blocos visíveis
+        float escalaTela = escalaExibicao(pageIndex);
+        double pixels = (double) largurasPaginas[pageIndex] * escalaTela * alturasPaginas[pageIndex] * escalaTela;
+        if (pixels > LIMITE_PIXELS_PAGINA_INTEIRA) {
+            exibirEmBlocos(pageIndex, escalaTela);
+            return;
         }
+
+        // Página já renderizada com este zoom: exibe sem passar pelo PDFRenderer
+        CachePaginas.Chave chave = new CachePaginas.Chave(documentoId, pageIndex, (float) currentZoom);
+        Image emCache = cachePaginas.get(chave);
+        if (emCache != null) {
+            renderizador.cancelar();
+            exibirImagem(emCache, pageIndex);
+            anteciparVizinhas(pageIndex, emCache);
+            return;
+        }
+
+        renderizador.renderizar(document, pageIndex, (float) currentZoom,
+            previa -> exibirImagem(previa, pageIndex),
+            fxImage -> {
+                cachePaginas.put(chave, fxImage);
+                exibirImagem(fxImage, pageIndex);
+                anteciparVizinhas(pageIndex, fxImage);
+            },
+            e -> showError("Erro ao renderizar PDF", e.getMessage()));
+    }
+
+    /**
+     * Pré-renderiza as próximas páginas no sentido da leitura e a anterior,
+     * depois que a página pedida já foi exibida. O total antecipado é limitado
+     * a um quarto do orçamento do cache para não expulsar as páginas já vistas.
+     */
+    private void anteciparVizinhas(int pageIndex, Image paginaAtual) {
+        if (paginasAntecipadas == 0) return;
+        long bytesPorPagina = Math.max(1L, (long) paginaAtual.getWidth() * (long) paginaAtual.getHeight() * 4L);
+        long maximo = Math.min(paginasAntecipadas + 1L, cachePaginas.getLimiteBytes() / 4 / bytesPorPagina);
+
+        int[] candidatas = new int[paginasAntecipadas + 1];
+        for (int i = 0; i < paginasAntecipadas; i++) {
+            candidatas[i] = pageIndex + direcaoLeitura * (i + 1);
+        }
+        candidatas[paginasAntecipadas] = pageIndex - direcaoLeitura;
+
+        float escala = (float) currentZoom;
+        long docId = documentoId;
+        int agendadas = 0;
+        for (int pagina : candidatas) {
+            if (agendadas >= maximo) break;
+            if (pagina < 0 || pagina >= totalPages) continue;
+            CachePaginas.Chave chave = new CachePaginas.Chave(docId, pagina, escala);
+            if (cachePaginas.contem(chave)) continue;
+            renderizador.antecipar(document, pagina, escala, imagem -> cachePaginas.put(chave, imagem));
+            agendadas++;
+        }
+    }
+
+    /**
+     * Exibe a imagem renderizada (chamado na JavaFX Application Thread).
+     * Se a página já está na tela (prévia), apenas troca a imagem, sem mexer na rolagem.
+     */
+    private void exibirImagem(Image fxImage, int pageIndex) {
+        if (imagemExibida != null && paginaExibida == pageIndex && zoomExibido == currentZoom) {
+            ImagemPagina.exibir(imagemExibida, fxImage);
+            return;
+        }
+
+        limparPaginaExibida();
+        ImageView imageView = new ImageView();
+        ImagemPagina.exibir(imageView, fxImage);
+        imageView.setPreserveRatio(true);
+        
+        // Ajusta o tamanho baseado no zoom e na largura disponível
+        double scrollWidth = scrollPane.getWidth() - 20;
+        if (scrollWidth > 0) {
+            imageView.setFitWidth(scrollWidth * currentZoom);
+        } else {
+            // Tamanho final da página, para que a prévia não apareça reduzida
+            imageView.setFitWidth(largurasPaginas[pageIndex] * currentZoom);
+        }
+
+        // A camada de destaques da busca fica sobre a imagem, com a mesma origem
+        StackPane pagina = new StackPane(imageView, destaquesPagina);
+        pagina.setAlignment(Pos.TOP_LEFT);
+        pagina.setMaxWidth(StackPane.USE_PREF_SIZE);
+        pdfContainer.getChildren().add(pagina);
+        scrollPane.setVvalue(0.0); // Volta ao topo
+
+        imagemExibida = imageView;
+        paginaExibida = pageIndex;
+        zoomExibido = currentZoom;
+        atualizarDestaques();
     }
 
     /**
@@ -222,17 +788,35 @@ public class EditPDF {
      * Fecha o documento PDF atual
      */
     public void close() {
+        documentoId++;  // Invalida também um carregamento ainda em andamento
+        renderizador.cancelarTudo();
+        indexador.cancelar();
+        indice = null;
+        ocorrencias = List.of();
+        ocorrenciaAtual = -1;
+        visualizacaoContinua.limpar();
+        painelMiniaturas.limpar();
+        cachePaginas.clear();
         if (document != null) {
-            try {
-                document.close();
-            } catch (IOException e) {
-                // Ignora erros ao fechar
-            }
+            // Fecha na thread de renderização, após qualquer renderização em andamento
+            renderizador.fecharDocumento(document);
             document = null;
-            renderer = null;
-            pdfContainer.getChildren().clear();
+            limparPaginaExibida();
             pageLabel.setText("Página -/-");
             totalPages = 0;
+            largurasPaginas = new float[0];
+            alturasPaginas = new float[0];
+            tamanhosCompletos = false;
+            atualizarResultadoBusca();
         }
     }
+
+    /**
+     * Libera definitivamente os recursos (usado no encerramento da aplicação)
+     */
+    public void dispose() {
+        close();
+        renderizador.encerrar();
+        indexador.encerrar();
+    }
 }
\ No newline at end of file
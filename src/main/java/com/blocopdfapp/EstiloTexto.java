@@ -0,0 +1,171 @@
+package com.blocopdfapp;
+
+import java.lang.ref.WeakReference;
+import java.util.Map;
+import java.util.Objects;
+import java.util.WeakHashMap;
+
+/**
+ * Estilo de um trecho de texto do editor (fonte, tamanho, negrito, itálico,
+ * sublinhado e marca-texto). É imutável e internado: estilos iguais são sempre
+ * a mesma instância e compartilham a mesma string CSS, que só é usada na
+ * fronteira com o InlineCssTextArea. A conversão de CSS para estilo também é
+ * guardada, então cada string distinta é interpretada uma única vez.
+ * As duas tabelas guardam referências fracas: um estilo (ou uma string CSS) que nenhum
+ * documento usa mais sai delas, e a memória não cresce com cada estilo já visto.
+ */
+public final class EstiloTexto {
+
+    // Acessadas só dentro de métodos synchronized da classe
+    private static final Map<EstiloTexto, WeakReference<EstiloTexto>> instancias = new WeakHashMap<>();
+    private static final Map<String, WeakReference<EstiloTexto>> porCss = new WeakHashMap<>();
+
+    /** Estilo sem nenhuma propriedade (usa o padrão da área de texto) */
+    public static final EstiloTexto PADRAO = criar(null, 0, false, false, false, null);
+
+    private final String fonte;       // null = fonte padrão
+    private final int tamanho;        // Em pontos; 0 = tamanho padrão
+    private final boolean negrito;
+    private final boolean italico;
+    private final boolean sublinhado;
+    private final String marcaTexto;  // Cor em hexadecimal (#RRGGBB); null = sem marca
+    private final String css;
+
+    private EstiloTexto(String fonte, int tamanho, boolean negrito, boolean italico,
+                        boolean sublinhado, String marcaTexto) {
+        this.fonte = fonte;
+        this.tamanho = tamanho;
+        this.negrito = negrito;
+        this.italico = italico;
+        this.sublinhado = sublinhado;
+        this.marcaTexto = marcaTexto;
+        this.css = gerarCss();
+    }
+
+    /**
+     * Retorna a instância única do estilo com estas propriedades
+     */
+    public static synchronized EstiloTexto criar(String fonte, int tamanho, boolean negrito, boolean italico,
+                                                 boolean sublinhado, String marcaTexto) {
+        EstiloTexto estilo = new EstiloTexto(fonte, tamanho, negrito, italico, sublinhado, marcaTexto);
+        EstiloTexto existente = obter(instancias, estilo);
+        if (existente != null) return existente;
+        instancias.put(estilo, new WeakReference<>(estilo));
+        if (obter(porCss, estilo.css) == null) porCss.put(estilo.css, new WeakReference<>(estilo));
+        return estilo;
+    }
+
+    /**
+     * Converte o CSS inline de um trecho no estilo correspondente.
+     * Propriedades desconhecidas são ignoradas.
+     */
+    public static synchronized EstiloTexto de(String css) {
+        if (css == null || css.isEmpty()) return PADRAO;
+        EstiloTexto estilo = obter(porCss, css);
+        if (estilo == null) {
+            estilo = interpretar(css);
+            porCss.put(css, new WeakReference<>(estilo));
+        }
+        return estilo;
+    }
+
+    private static <K> EstiloTexto obter(Map<K, WeakReference<EstiloTexto>> tabela, K chave) {
+        WeakReference<EstiloTexto> referencia = tabela.get(chave);
+        return referencia != null ? referencia.get() : null;
+    }
+
+    private static EstiloTexto interpretar(String css) {
+        String fonte = null;
+        int tamanho = 0;
+        boolean negrito = false, italico = false, sublinhado = false;
+        String marcaTexto = null;
+
+        for (String declaracao : css.split(";")) {
+            int separador = declaracao.indexOf(':');
+            if (separador < 0) continue;
+            String propriedade = declaracao.substring(0, separador).trim();
+            String valor = declaracao.substring(separador + 1).trim();
+            switch (propriedade) {
+                case "-fx-font-family":
+                    fonte = valor.replace("'", "").replace("\"", "").trim();
+                    break;
+                case "-fx-font-size":
+                    try {
+                        tamanho = (int) Math.round(Double.parseDouble(valor.replace("pt", "").trim()));
+                    } catch (NumberFormatException e) {
+                        tamanho = 0;
+                    }
+                    break;
+                case "-fx-font-weight":
+                    negrito = valor.equals("bold");
+                    break;
+                case "-fx-font-style":
+                    italico = valor.equals("italic");
+                    break;
+                case "-fx-underline":
+                    sublinhado = valor.equals("true");
+                    break;
+                case "-rtfx-background-color":
+                    marcaTexto = valor.toUpperCase();
+                    break;
+                default:
+                    break;
+            }
+        }
+        return criar(fonte, tamanho, negrito, italico, sublinhado, marcaTexto);
+    }
+
+    private String gerarCss() {
+        StringBuilder sb = new StringBuilder();
+        if (fonte != null) sb.append("-fx-font-family: '").append(fonte).append("'; ");
+        if (tamanho > 0) sb.append("-fx-font-size: ").append(tamanho).append("pt; ");
+        if (negrito) sb.append("-fx-font-weight: bold; ");
+        if (italico) sb.append("-fx-font-style: italic; ");
+        if (sublinhado) sb.append("-fx-underline: true; ");
+        if (marcaTexto != null) sb.append("-rtfx-background-color: ").append(marcaTexto).append("; ");
+        return sb.toString().trim();
+    }
+
+    // Getters
+    public String getFonte() { return fonte; }
+    public int getTamanho() { return tamanho; }
+    public boolean isNegrito() { return negrito; }
+    public boolean isItalico() { return italico; }
+    public boolean isSublinhado() { return sublinhado; }
+    public String getMarcaTexto() { return marcaTexto; }
+
+    // Cópias com uma propriedade alterada
+    public EstiloTexto comFonte(String fonte) { return criar(fonte, tamanho, negrito, italico, sublinhado, marcaTexto); }
+    public EstiloTexto comTamanho(int tamanho) { return criar(fonte, tamanho, negrito, italico, sublinhado, marcaTexto); }
+    public EstiloTexto comNegrito(boolean negrito) { return criar(fonte, tamanho, negrito, italico, sublinhado, marcaTexto); }
+    public EstiloTexto comItalico(boolean italico) { return criar(fonte, tamanho, negrito, italico, sublinhado, marcaTexto); }
+    public EstiloTexto comSublinhado(boolean sublinhado) { return criar(fonte, tamanho, negrito, italico, sublinhado, marcaTexto); }
+    public EstiloTexto comMarcaTexto(String marcaTexto) { return criar(fonte, tamanho, negrito, italico, sublinhado, marcaTexto); }
+
+    /**
+     * CSS inline equivalente (a mesma instância de String para estilos iguais)
+     */
+    public String toCss() {
+        return css;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof EstiloTexto)) return false;
+        EstiloTexto outro = (EstiloTexto) o;
+        return tamanho == outro.tamanho && negrito == outro.negrito && italico == outro.italico
+                && sublinhado == outro.sublinhado && Objects.equals(fonte, outro.fonte)
+                && Objects.equals(marcaTexto, outro.marcaTexto);
+    }
+
+    @Override
+    public int hashCode() {
+        return css.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return css;
+    }
+}
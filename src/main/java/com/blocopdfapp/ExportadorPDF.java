@@ -0,0 +1,497 @@
+package com.blocopdfapp;
+
+import javafx.concurrent.Task;
+import org.apache.fontbox.ttf.TrueTypeFont;
+import org.apache.pdfbox.io.MemoryUsageSetting;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.pdmodel.font.PDFont;
+import org.apache.pdfbox.pdmodel.font.PDType0Font;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.apache.pdfbox.util.Matrix;
+import org.fxmisc.richtext.model.Paragraph;
+import org.fxmisc.richtext.model.StyleSpan;
+import org.fxmisc.richtext.model.StyledDocument;
+
+import java.awt.Color;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Exporta o documento do editor para PDF em segundo plano.
+ * Cada parágrafo é quebrado em linhas com as larguras reais das fontes (guardadas em
+ * MetricasFonte), respeitando fonte, tamanho, negrito, itálico, sublinhado, marca-texto
+ * e alinhamento (inclusive justificado). A diagramação, a parte cara, é feita em paralelo
+ * por lotes de parágrafos (fork-join); a paginação e a escrita seguem em ordem, página a
+ * página: o fluxo de conteúdo de cada página é fechado antes da próxima, e o PDFBox
+ * mantém as páginas prontas num arquivo temporário, então a memória não cresce com o documento.
+ * As fontes do editor são embutidas como subconjunto quando estão instaladas (RegistroFontes);
+ * senão, usa-se a fonte padrão do PDF mais próxima (Times ou Helvetica). Caracteres que a
+ * fonte não tem são trocados por '?'.
+ */
+public class ExportadorPDF extends Task<Void> {
+
+    private static final PDRectangle TAMANHO_PAGINA = PDRectangle.A4;
+    private static final float MARGEM = 56.7f;                        // 2 cm
+    private static final float ENTRELINHA = 1.2f;                     // Altura da linha / tamanho da fonte
+    private static final long MEMORIA_PDF = 16L * 1024 * 1024;        // Acima disso o PDFBox usa arquivo temporário
+    private static final float LARGURA_UTIL = TAMANHO_PAGINA.getWidth() - 2 * MARGEM;
+    private static final char SUBSTITUTO = '?';
+    private static final int PARAGRAFOS_POR_LOTE = 4096;
+    private static final int PARAGRAFOS_POR_TAREFA = 64;              // Abaixo disso a diagramação não é dividida
+
+    private final StyledDocument<String, String, String> documento;
+    private final Path destino;
+    private final EstiloTexto estiloBase;
+
+    /**
+     * Construtor - o documento deve ser um instantâneo; estiloBase dá a fonte e o tamanho
+     * do texto sem estilo próprio
+     */
+    public ExportadorPDF(StyledDocument<String, String, String> documento, Path destino, EstiloTexto estiloBase) {
+        this.documento = documento;
+        this.destino = destino;
+        this.estiloBase = estiloBase;
+    }
+
+    @Override
+    protected Void call() throws Exception {
+        Path temporario = Files.createTempFile(destino.toAbsolutePath().getParent(), "." + destino.getFileName() + "-", ".tmp");
+        try {
+            try (PDDocument pdf = new PDDocument(MemoryUsageSetting.setupMixed(MEMORIA_PDF))) {
+                Paginador paginador = new Paginador(pdf);
+                Fontes fontes = new Fontes(estiloBase);
+                List<Paragraph<String, String, String>> paragrafos = documento.getParagraphs();
+                int total = paragrafos.size();
+                try {
+                    // Cada lote é diagramado em paralelo e depois paginado em ordem; só um lote fica em memória
+                    for (int inicio = 0; inicio < total; inicio += PARAGRAFOS_POR_LOTE) {
+                        int fim = Math.min(total, inicio + PARAGRAFOS_POR_LOTE);
+                        List<List<Linha>> linhas = new ArrayList<>(Collections.nCopies(fim - inicio, null));
+                        Diagramacao lote = new Diagramacao(paragrafos, fontes, inicio, inicio, fim, linhas);
+                        ForkJoinPool.commonPool().invoke(lote);
+                        if (isCancelled()) return null;
+                        for (List<Linha> paragrafo : linhas) {
+                            for (Linha linha : paragrafo) paginador.escrever(linha);
+                        }
+                        updateProgress(fim, total);
+                    }
+                } finally {
+                    paginador.fecharPagina();
+                }
+                updateMessage("Gravando " + pdf.getNumberOfPages() + " páginas...");
+                pdf.save(temporario.toFile());
+            }
+            if (isCancelled()) return null;
+            try {
+                Files.move(temporario, destino, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temporario, destino, StandardCopyOption.REPLACE_EXISTING);
+            }
+            updateProgress(1, 1);
+        } finally {
+            Files.deleteIfExists(temporario);
+        }
+        return null;
+    }
+
+    /**
+     * Fonte padrão do PDF mais próxima da família do editor
+     */
+    static PDFont fontePadrao(String familia, boolean negrito, boolean italico) {
+        if ("Times New Roman".equals(familia)) {
+            if (negrito) return italico ? PDType1Font.TIMES_BOLD_ITALIC : PDType1Font.TIMES_BOLD;
+            return italico ? PDType1Font.TIMES_ITALIC : PDType1Font.TIMES_ROMAN;
+        }
+        // Arial, Helvetica, Verdana e Calibri são sem serifa
+        if (negrito) return italico ? PDType1Font.HELVETICA_BOLD_OBLIQUE : PDType1Font.HELVETICA_BOLD;
+        return italico ? PDType1Font.HELVETICA_OBLIQUE : PDType1Font.HELVETICA;
+    }
+
+    /**
+     * Quebra o parágrafo em linhas de até largura pontos. Palavras são separadas por
+     * espaços; uma palavra mais larga que a linha é quebrada entre caracteres.
+     */
+    static List<Linha> diagramar(Paragraph<String, String, String> paragrafo, Fontes fontes, float largura) {
+        String alinhamento = alinhamento(paragrafo.getParagraphStyle());
+        List<Palavra> palavras = new ArrayList<>();
+        float recuo = 0;                       // Espaços no início do parágrafo
+        float tamanhoMaximo = 0;
+        Palavra atual = null;
+
+        String texto = paragrafo.getText();
+        int posicao = 0;
+        for (StyleSpan<String> trecho : paragrafo.getStyleSpans()) {
+            Fonte fonte = fontes.de(trecho.getStyle());
+            tamanhoMaximo = Math.max(tamanhoMaximo, fonte.tamanho);
+            int fim = Math.min(texto.length(), posicao + trecho.getLength());
+            for (; posicao < fim; posicao++) {
+                char c = texto.charAt(posicao);
+                if (c == ' ' || c == '\t') {
+                    float espaco = fonte.metricas.largura(' ') * fonte.tamanho / 1000f * (c == '\t' ? 4 : 1);
+                    if (atual != null) atual.espacoDepois += espaco;
+                    else if (palavras.isEmpty()) recuo += espaco;
+                    else palavras.get(palavras.size() - 1).espacoDepois += espaco;
+                    atual = null;
+                    continue;
+                }
+                if (atual == null) {
+                    atual = new Palavra();
+                    palavras.add(atual);
+                }
+                atual.adicionar(fonte, fonte.metricas.suporta(c) ? c : SUBSTITUTO);
+            }
+        }
+        if (tamanhoMaximo == 0) tamanhoMaximo = fontes.de("").tamanho;
+
+        // Quebra gulosa: cada palavra vai para a linha atual se couber
+        List<Linha> linhas = new ArrayList<>();
+        Linha linha = new Linha(alinhamento, recuo);
+        for (Palavra palavra : palavras) {
+            for (Palavra parte : palavra.dividir(largura)) {
+                if (!linha.palavras.isEmpty() && linha.larguraCom(parte) > largura) {
+                    linhas.add(linha);
+                    linha = new Linha(alinhamento, 0);
+                }
+                linha.adicionar(parte);
+            }
+        }
+        linha.ultima = true;
+        if (linha.palavras.isEmpty()) linha.altura = tamanhoMaximo * ENTRELINHA;  // Parágrafo vazio
+        linhas.add(linha);
+        return linhas;
+    }
+
+    private static String alinhamento(String estiloParagrafo) {
+        if (estiloParagrafo == null) return "left";
+        int inicio = estiloParagrafo.indexOf("-fx-text-alignment:");
+        if (inicio < 0) return "left";
+        int fim = estiloParagrafo.indexOf(';', inicio);
+        return estiloParagrafo.substring(inicio + "-fx-text-alignment:".length(),
+                fim < 0 ? estiloParagrafo.length() : fim).trim();
+    }
+
+    /**
+     * Diagrama um intervalo de parágrafos, dividindo-o entre os núcleos do processador.
+     * Cada parágrafo é independente; o resultado fica na ordem do documento.
+     */
+    private final class Diagramacao extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final List<Paragraph<String, String, String>> paragrafos;
+        private final Fontes fontes;
+        private final int base;            // Primeiro parágrafo do lote (índice 0 do resultado)
+        private final int inicio;
+        private final int fim;
+        private final List<List<Linha>> resultado;  // Um item por parágrafo, cada tarefa nos seus
+
+        Diagramacao(List<Paragraph<String, String, String>> paragrafos, Fontes fontes, int base, int inicio, int fim,
+                    List<List<Linha>> resultado) {
+            this.paragrafos = paragrafos;
+            this.fontes = fontes;
+            this.base = base;
+            this.inicio = inicio;
+            this.fim = fim;
+            this.resultado = resultado;
+        }
+
+        @Override
+        protected void compute() {
+            if (fim - inicio > PARAGRAFOS_POR_TAREFA) {
+                int meio = (inicio + fim) >>> 1;
+                invokeAll(new Diagramacao(paragrafos, fontes, base, inicio, meio, resultado),
+                        new Diagramacao(paragrafos, fontes, base, meio, fim, resultado));
+                return;
+            }
+            for (int i = inicio; i < fim && !ExportadorPDF.this.isCancelled(); i++) {
+                resultado.set(i - base, diagramar(paragrafos.get(i), fontes, LARGURA_UTIL));
+            }
+        }
+    }
+
+    /**
+     * Fontes dos trechos de uma exportação, uma por estilo CSS, compartilhadas pelas threads da diagramação
+     */
+    static final class Fontes {
+        private final EstiloTexto base;
+        private final Map<String, Fonte> porEstilo = new ConcurrentHashMap<>();
+
+        Fontes(EstiloTexto base) {
+            this.base = base;
+        }
+
+        Fonte de(String css) {
+            return porEstilo.computeIfAbsent(css, estilo -> Fonte.de(EstiloTexto.de(estilo), base));
+        }
+    }
+
+    /**
+     * Fonte PDF e demais propriedades de um trecho, com o padrão no lugar do que o trecho não define
+     */
+    static final class Fonte {
+        final TrueTypeFont truetype;       // Fonte do sistema a embutir; null = fonte padrão do PDF
+        final PDFont padrao;
+        final MetricasFonte metricas;
+        final float tamanho;
+        final boolean sublinhado;
+        final Color marcaTexto;
+
+        private Fonte(TrueTypeFont truetype, PDFont padrao, float tamanho, boolean sublinhado, Color marcaTexto) {
+            this.truetype = truetype;
+            this.padrao = padrao;
+            this.metricas = truetype != null ? MetricasFonte.de(truetype) : MetricasFonte.de(padrao);
+            this.tamanho = tamanho;
+            this.sublinhado = sublinhado;
+            this.marcaTexto = marcaTexto;
+        }
+
+        static Fonte de(EstiloTexto estilo, EstiloTexto base) {
+            String familia = estilo.getFonte() != null ? estilo.getFonte() : base.getFonte();
+            int tamanho = estilo.getTamanho() > 0 ? estilo.getTamanho() : base.getTamanho();
+            TrueTypeFont truetype = RegistroFontes.truetype(familia, estilo.isNegrito(), estilo.isItalico());
+            PDFont padrao = fontePadrao(familia, estilo.isNegrito(), estilo.isItalico());
+            Color marca = null;
+            if (estilo.getMarcaTexto() != null) {
+                try {
+                    marca = Color.decode(estilo.getMarcaTexto());
+                } catch (NumberFormatException e) {
+                    marca = null;
+                }
+            }
+            return new Fonte(truetype, padrao, tamanho > 0 ? tamanho : 12, estilo.isSublinhado(), marca);
+        }
+    }
+
+    /**
+     * Trecho de uma palavra com uma única fonte
+     */
+    static final class Pedaco {
+        final Fonte fonte;
+        final StringBuilder texto = new StringBuilder();
+        float largura;
+
+        Pedaco(Fonte fonte) {
+            this.fonte = fonte;
+        }
+    }
+
+    /**
+     * Palavra (sem espaços), possivelmente com mais de uma fonte, e o espaço que a segue
+     */
+    static final class Palavra {
+        final List<Pedaco> pedacos = new ArrayList<>(1);
+        float largura;
+        float espacoDepois;
+
+        void adicionar(Fonte fonte, char c) {
+            Pedaco ultimo = pedacos.isEmpty() ? null : pedacos.get(pedacos.size() - 1);
+            if (ultimo == null || ultimo.fonte != fonte) {
+                ultimo = new Pedaco(fonte);
+                pedacos.add(ultimo);
+            }
+            float larguraCaractere = fonte.metricas.largura(c) * fonte.tamanho / 1000f;
+            ultimo.texto.append(c);
+            ultimo.largura += larguraCaractere;
+            largura += larguraCaractere;
+        }
+
+        float altura() {
+            float maior = 0;
+            for (Pedaco pedaco : pedacos) maior = Math.max(maior, pedaco.fonte.tamanho);
+            return maior;
+        }
+
+        /**
+         * Divide a palavra em partes que caibam na largura (a própria palavra, se já couber)
+         */
+        List<Palavra> dividir(float limite) {
+            if (largura <= limite) return List.of(this);
+            List<Palavra> partes = new ArrayList<>();
+            Palavra parte = new Palavra();
+            for (Pedaco pedaco : pedacos) {
+                for (int i = 0; i < pedaco.texto.length(); i++) {
+                    char c = pedaco.texto.charAt(i);
+                    float larguraCaractere = pedaco.fonte.metricas.largura(c) * pedaco.fonte.tamanho / 1000f;
+                    if (parte.largura + larguraCaractere > limite && parte.largura > 0) {
+                        partes.add(parte);
+                        parte = new Palavra();
+                    }
+                    parte.adicionar(pedaco.fonte, c);
+                }
+            }
+            parte.espacoDepois = espacoDepois;
+            partes.add(parte);
+            return partes;
+        }
+    }
+
+    /**
+     * Linha diagramada: palavras, alinhamento e altura
+     */
+    static final class Linha {
+        final String alinhamento;
+        final float recuo;
+        final List<Palavra> palavras = new ArrayList<>();
+        float largura;              // Largura das palavras e dos espaços entre elas
+        float altura;
+        boolean ultima;             // A última linha do parágrafo justificado não é esticada
+
+        Linha(String alinhamento, float recuo) {
+            this.alinhamento = alinhamento;
+            this.recuo = recuo;
+            this.largura = recuo;
+        }
+
+        float larguraCom(Palavra palavra) {
+            float espaco = palavras.isEmpty() ? 0 : palavras.get(palavras.size() - 1).espacoDepois;
+            return largura + espaco + palavra.largura;
+        }
+
+        void adicionar(Palavra palavra) {
+            largura = larguraCom(palavra);
+            altura = Math.max(altura, palavra.altura() * ENTRELINHA);
+            palavras.add(palavra);
+        }
+    }
+
+    /**
+     * Escreve as linhas nas páginas, abrindo uma página nova quando a atual enche
+     */
+    private static final class Paginador {
+        private final PDDocument pdf;
+        private final Map<TrueTypeFont, PDFont> embutidas = new HashMap<>();
+        private PDPageContentStream conteudo;
+        private float y;
+        private PDFont fonteAtual;
+        private float tamanhoAtual;
+
+        Paginador(PDDocument pdf) {
+            this.pdf = pdf;
+        }
+
+        void escrever(Linha linha) throws IOException {
+            if (conteudo == null || y - linha.altura < MARGEM) novaPagina();
+            float sobra = Math.max(0, LARGURA_UTIL - linha.largura);
+            float x = MARGEM + linha.recuo;
+            float espacoExtra = 0;
+            switch (linha.alinhamento) {
+                case "center": x += sobra / 2; break;
+                case "right": x += sobra; break;
+                case "justify":
+                    if (!linha.ultima && linha.palavras.size() > 1) espacoExtra = sobra / (linha.palavras.size() - 1);
+                    break;
+                default: break;
+            }
+            float linhaBase = y - linha.altura / ENTRELINHA;
+
+            // Posição de cada pedaço (o fundo de marca-texto vem antes do texto)
+            List<Pedaco> pedacos = new ArrayList<>();
+            List<Float> posicoes = new ArrayList<>();
+            for (Palavra palavra : linha.palavras) {
+                float xPedaco = x;
+                for (Pedaco pedaco : palavra.pedacos) {
+                    pedacos.add(pedaco);
+                    posicoes.add(xPedaco);
+                    xPedaco += pedaco.largura;
+                }
+                x += palavra.largura + palavra.espacoDepois + espacoExtra;
+            }
+            desenharMarcas(pedacos, posicoes, linhaBase);
+            desenharTexto(pedacos, posicoes, linhaBase);
+            desenharSublinhados(pedacos, posicoes, linhaBase);
+            y -= linha.altura;
+        }
+
+        private void desenharMarcas(List<Pedaco> pedacos, List<Float> posicoes, float linhaBase) throws IOException {
+            Color corAtual = null;
+            for (int i = 0; i < pedacos.size(); i++) {
+                Pedaco pedaco = pedacos.get(i);
+                Color cor = pedaco.fonte.marcaTexto;
+                if (cor == null) continue;
+                if (!cor.equals(corAtual)) {
+                    conteudo.setNonStrokingColor(cor);
+                    corAtual = cor;
+                }
+                float tamanho = pedaco.fonte.tamanho;
+                conteudo.addRect(posicoes.get(i), linhaBase - tamanho * 0.25f, pedaco.largura, tamanho * ENTRELINHA);
+                conteudo.fill();
+            }
+            if (corAtual != null) conteudo.setNonStrokingColor(Color.BLACK);
+        }
+
+        private void desenharTexto(List<Pedaco> pedacos, List<Float> posicoes, float linhaBase) throws IOException {
+            if (pedacos.isEmpty()) return;
+            conteudo.beginText();
+            for (int i = 0; i < pedacos.size(); i++) {
+                Pedaco pedaco = pedacos.get(i);
+                PDFont fonte = fontePdf(pedaco.fonte);
+                if (fonte != fonteAtual || pedaco.fonte.tamanho != tamanhoAtual) {
+                    conteudo.setFont(fonte, pedaco.fonte.tamanho);
+                    fonteAtual = fonte;
+                    tamanhoAtual = pedaco.fonte.tamanho;
+                }
+                conteudo.setTextMatrix(Matrix.getTranslateInstance(posicoes.get(i), linhaBase));
+                conteudo.showText(pedaco.texto.toString());
+            }
+            conteudo.endText();
+        }
+
+        private void desenharSublinhados(List<Pedaco> pedacos, List<Float> posicoes, float linhaBase) throws IOException {
+            for (int i = 0; i < pedacos.size(); i++) {
+                Pedaco pedaco = pedacos.get(i);
+                if (!pedaco.fonte.sublinhado) continue;
+                float tamanho = pedaco.fonte.tamanho;
+                float altura = linhaBase - tamanho * 0.12f;
+                conteudo.setLineWidth(tamanho * 0.05f);
+                conteudo.moveTo(posicoes.get(i), altura);
+                conteudo.lineTo(posicoes.get(i) + pedaco.largura, altura);
+                conteudo.stroke();
+            }
+        }
+
+        /**
+         * Fonte do trecho neste documento. As fontes do sistema são embutidas uma vez por
+         * documento, como subconjunto: só os glifos usados vão para o arquivo, ao salvar.
+         */
+        private PDFont fontePdf(Fonte fonte) throws IOException {
+            if (fonte.truetype == null) return fonte.padrao;
+            PDFont embutida = embutidas.get(fonte.truetype);
+            if (embutida == null) {
+                embutida = PDType0Font.load(pdf, fonte.truetype, true);
+                embutidas.put(fonte.truetype, embutida);
+            }
+            return embutida;
+        }
+
+        private void novaPagina() throws IOException {
+            fecharPagina();
+            PDPage pagina = new PDPage(TAMANHO_PAGINA);
+            pdf.addPage(pagina);
+            conteudo = new PDPageContentStream(pdf, pagina);
+            fonteAtual = null;
+            y = TAMANHO_PAGINA.getHeight() - MARGEM;
+        }
+
+        /**
+         * Fecha o fluxo de conteúdo da página atual (o conteúdo dela deixa a memória)
+         */
+        void fecharPagina() throws IOException {
+            if (conteudo == null) return;
+            conteudo.close();
+            conteudo = null;
+        }
+    }
+}
@@ -0,0 +1,232 @@
+package com.blocopdfapp;
+
+import org.fxmisc.richtext.InlineCssTextArea;
+import org.fxmisc.richtext.model.Paragraph;
+import org.fxmisc.richtext.model.StyleSpan;
+import org.fxmisc.richtext.model.StyleSpansBuilder;
+import org.fxmisc.richtext.model.StyledDocument;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Formato nativo do editor (.bnr), que guarda o texto com a formatação.
+ *
+ * O arquivo tem uma assinatura, o tamanho do cabeçalho de estilos e o cabeçalho,
+ * seguidos do texto em UTF-8 (com \n), exatamente como num .txt. O cabeçalho traz uma
+ * tabela de estilos sem repetições (o CSS inline de cada estilo distinto, de trechos
+ * ou de parágrafos), os trechos de estilo do documento inteiro codificados por
+ * comprimento de sequência (comprimento, índice na tabela) e, da mesma forma, as
+ * sequências de parágrafos com o mesmo estilo de parágrafo. Todos os números são
+ * varints. Num documento pouco formatado o cabeçalho tem poucos bytes, e o texto é
+ * lido e gravado pelo mesmo caminho do texto simples.
+ */
+public final class FormatoRico {
+
+    public static final String EXTENSAO = ".bnr";
+    private static final byte[] ASSINATURA = {'B', 'N', 'R', 1};  // Inclui a versão do formato
+    private static final int TAMANHO_MAXIMO_CABECALHO = 512 * 1024 * 1024;
+
+    private FormatoRico() {
+    }
+
+    /**
+     * Indica, pela extensão, se o arquivo está no formato rico
+     */
+    public static boolean ehArquivoRico(Path arquivo) {
+        return arquivo.getFileName().toString().toLowerCase().endsWith(EXTENSAO);
+    }
+
+    /**
+     * Assinatura e cabeçalho de estilos do documento, a gravar antes do texto.
+     * Os estilos são os CSS inline do InlineCssTextArea.
+     */
+    static byte[] codificarEstilos(StyledDocument<?, ?, ?> documento) throws IOException {
+        Map<String, Integer> tabela = new HashMap<>();
+        List<String> estilos = new ArrayList<>();
+        Sequencias trechos = new Sequencias();
+        Sequencias paragrafos = new Sequencias();
+
+        List<? extends Paragraph<?, ?, ?>> lista = documento.getParagraphs();
+        for (int i = 0; i < lista.size(); i++) {
+            Paragraph<?, ?, ?> paragrafo = lista.get(i);
+            paragrafos.adicionar(indice(String.valueOf(paragrafo.getParagraphStyle()), tabela, estilos), 1);
+            int ultimo = -1;
+            for (StyleSpan<?> trecho : paragrafo.getStyleSpans()) {
+                ultimo = indice(String.valueOf(trecho.getStyle()), tabela, estilos);
+                trechos.adicionar(ultimo, trecho.getLength());
+            }
+            if (i < lista.size() - 1) trechos.adicionar(ultimo, 1);  // A quebra de linha fica com o último trecho
+        }
+
+        ByteArrayOutputStream cabecalho = new ByteArrayOutputStream();
+        DataOutputStream saida = new DataOutputStream(cabecalho);
+        CodificacaoBinaria.escreverVarint(saida, estilos.size());
+        for (String estilo : estilos) {
+            CodificacaoBinaria.escreverTexto(saida, estilo);
+        }
+        trechos.escrever(saida);
+        paragrafos.escrever(saida);
+
+        ByteBuffer resultado = ByteBuffer.allocate(ASSINATURA.length + 4 + cabecalho.size());
+        resultado.put(ASSINATURA).putInt(cabecalho.size()).put(cabecalho.toByteArray());
+        return resultado.array();
+    }
+
+    /**
+     * Lê a assinatura e o cabeçalho de estilos, deixando o canal no início do texto
+     */
+    public static Estilos lerEstilos(FileChannel canal) throws IOException {
+        ByteBuffer inicio = ByteBuffer.allocate(ASSINATURA.length + 4);
+        lerCompleto(canal, inicio);
+        byte[] assinatura = new byte[ASSINATURA.length];
+        inicio.get(assinatura);
+        if (!Arrays.equals(assinatura, ASSINATURA)) throw new IOException("Arquivo não está no formato " + EXTENSAO);
+        int tamanho = inicio.getInt();
+        if (tamanho < 0 || tamanho > TAMANHO_MAXIMO_CABECALHO) throw new IOException("Cabeçalho inválido");
+
+        ByteBuffer cabecalho = ByteBuffer.allocate(tamanho);
+        lerCompleto(canal, cabecalho);
+        DataInputStream entrada = new DataInputStream(new ByteArrayInputStream(cabecalho.array()));
+        String[] estilos = new String[CodificacaoBinaria.lerVarintInt(entrada)];
+        for (int i = 0; i < estilos.length; i++) {
+            estilos[i] = CodificacaoBinaria.lerTexto(entrada);
+        }
+        return new Estilos(estilos, Sequencias.ler(entrada, estilos.length), Sequencias.ler(entrada, estilos.length));
+    }
+
+    /**
+     * Lê um documento rico por completo na área de texto (usado fora do carregamento em
+     * segundo plano, como na recuperação do diário)
+     */
+    public static void ler(Path arquivo, InlineCssTextArea area) throws IOException {
+        try (FileChannel canal = FileChannel.open(arquivo, StandardOpenOption.READ)) {
+            Estilos estilos = lerEstilos(canal);
+            ByteBuffer texto = ByteBuffer.allocate((int) (canal.size() - canal.position()));
+            lerCompleto(canal, texto);
+            area.replaceText(StandardCharsets.UTF_8.decode(texto).toString());
+            estilos.aplicar(area);
+        }
+    }
+
+    /**
+     * Estilos lidos do cabeçalho, aplicados depois que o texto estiver na área
+     */
+    public static final class Estilos {
+        private final String[] tabela;
+        private final Sequencias trechos;
+        private final Sequencias paragrafos;
+
+        private Estilos(String[] tabela, Sequencias trechos, Sequencias paragrafos) {
+            this.tabela = tabela;
+            this.trechos = trechos;
+            this.paragrafos = paragrafos;
+        }
+
+        /**
+         * Aplica os trechos de estilo numa única passada (setStyleSpans) e os estilos
+         * de parágrafo diferentes do padrão. O texto da área deve ser o texto do arquivo.
+         */
+        public void aplicar(InlineCssTextArea area) throws IOException {
+            if (trechos.total() != area.getLength() || paragrafos.total() != area.getParagraphs().size()) {
+                throw new IOException("O texto não corresponde aos estilos do arquivo.");
+            }
+            if (trechos.quantidade > 0) {
+                StyleSpansBuilder<String> construtor = new StyleSpansBuilder<>(trechos.quantidade);
+                for (int i = 0; i < trechos.quantidade; i++) {
+                    construtor.add(tabela[trechos.indices[i]], trechos.comprimentos[i]);
+                }
+                area.setStyleSpans(0, construtor.create());
+            }
+            int paragrafo = 0;
+            for (int i = 0; i < paragrafos.quantidade; i++) {
+                String estilo = tabela[paragrafos.indices[i]];
+                int fim = paragrafo + paragrafos.comprimentos[i];
+                if (!estilo.isEmpty()) {
+                    for (int p = paragrafo; p < fim; p++) area.setParagraphStyle(p, estilo);
+                }
+                paragrafo = fim;
+            }
+        }
+    }
+
+    /**
+     * Sequências (comprimento, índice do estilo), juntando as vizinhas de mesmo estilo
+     */
+    private static final class Sequencias {
+        private int[] comprimentos = new int[16];
+        private int[] indices = new int[16];
+        private int quantidade = 0;
+
+        void adicionar(int indice, int comprimento) {
+            if (comprimento == 0) return;
+            if (quantidade > 0 && indices[quantidade - 1] == indice) {
+                comprimentos[quantidade - 1] += comprimento;
+                return;
+            }
+            if (quantidade == comprimentos.length) {
+                comprimentos = Arrays.copyOf(comprimentos, quantidade * 2);
+                indices = Arrays.copyOf(indices, quantidade * 2);
+            }
+            comprimentos[quantidade] = comprimento;
+            indices[quantidade] = indice;
+            quantidade++;
+        }
+
+        long total() {
+            long total = 0;
+            for (int i = 0; i < quantidade; i++) total += comprimentos[i];
+            return total;
+        }
+
+        void escrever(DataOutputStream saida) throws IOException {
+            CodificacaoBinaria.escreverVarint(saida, quantidade);
+            for (int i = 0; i < quantidade; i++) {
+                CodificacaoBinaria.escreverVarint(saida, comprimentos[i]);
+                CodificacaoBinaria.escreverVarint(saida, indices[i]);
+            }
+        }
+
+        static Sequencias ler(DataInputStream entrada, int estilos) throws IOException {
+            Sequencias sequencias = new Sequencias();
+            int quantidade = CodificacaoBinaria.lerVarintInt(entrada);
+            for (int i = 0; i < quantidade; i++) {
+                int comprimento = CodificacaoBinaria.lerVarintInt(entrada);
+                int indice = CodificacaoBinaria.lerVarintInt(entrada);
+                if (indice >= estilos) throw new IOException("Estilo inexistente: " + indice);
+                sequencias.adicionar(indice, comprimento);
+            }
+            return sequencias;
+        }
+    }
+
+    private static int indice(String estilo, Map<String, Integer> tabela, List<String> estilos) {
+        Integer indice = tabela.get(estilo);
+        if (indice == null) {
+            indice = estilos.size();
+            tabela.put(estilo, indice);
+            estilos.add(estilo);
+        }
+        return indice;
+    }
+
+    private static void lerCompleto(FileChannel canal, ByteBuffer destino) throws IOException {
+        while (destino.hasRemaining()) {
+            if (canal.read(destino) < 0) throw new IOException("Arquivo truncado");
+        }
+        destino.flip();
+    }
+}
@@ -0,0 +1,160 @@
+package com.blocopdfapp;
+
+import javafx.concurrent.Task;
+import org.fxmisc.richtext.model.Paragraph;
+import org.fxmisc.richtext.model.StyledDocument;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.AclFileAttributeView;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Grava o texto de um documento em segundo plano, de forma atômica.
+ * Recebe um instantâneo imutável do documento (obtido sem copiar o texto),
+ * codifica parágrafo por parágrafo num buffer fixo e escreve por um único
+ * FileChannel num arquivo temporário do mesmo diretório, que só substitui o
+ * destino (movimentação atômica) depois de gravado e sincronizado com o disco.
+ * Uma falha ou cancelamento no meio do caminho deixa o arquivo original intacto, e o
+ * arquivo salvo mantém as permissões do original.
+ * No formato rico (FormatoRico), o cabeçalho de estilos vem antes do texto, sempre em UTF-8.
+ */
+public class GravadorTexto extends Task<Void> {
+
+    private static final int TAMANHO_BUFFER = 256 * 1024;
+
+    private final StyledDocument<?, ?, ?> documento;
+    private final Path destino;
+    private final Charset charset;
+    private final boolean rico;
+
+    /**
+     * Construtor - o documento deve ser um instantâneo (ex.: getContent().snapshot())
+     */
+    public GravadorTexto(StyledDocument<?, ?, ?> documento, Path destino, Charset charset) {
+        this(documento, destino, charset, false);
+    }
+
+    /**
+     * Construtor - com rico = true grava no formato rico (o charset é ignorado)
+     */
+    public GravadorTexto(StyledDocument<?, ?, ?> documento, Path destino, Charset charset, boolean rico) {
+        this.documento = documento;
+        this.destino = destino;
+        this.charset = rico ? StandardCharsets.UTF_8 : charset;
+        this.rico = rico;
+    }
+
+    @Override
+    protected Void call() throws Exception {
+        Path temporario = criarTemporario(destino);
+        try {
+            try (FileChannel canal = FileChannel.open(temporario, StandardOpenOption.WRITE)) {
+                escrever(canal);
+                canal.force(true);
+            }
+            if (isCancelled()) return null;
+            try {
+                Files.move(temporario, destino, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temporario, destino, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temporario);
+        }
+        return null;
+    }
+
+    /**
+     * Cria, no diretório do destino, o arquivo temporário que vai substituí-lo. Ao contrário
+     * de Files.createTempFile (sempre 0600), ele nasce com as permissões padrão de um arquivo
+     * novo, ou com as do destino, se este já existir.
+     */
+    static Path criarTemporario(Path destino) throws IOException {
+        Path diretorio = destino.toAbsolutePath().getParent();
+        Path temporario;
+        while (true) {
+            String sufixo = Long.toUnsignedString(ThreadLocalRandom.current().nextLong(), 36);
+            try {
+                temporario = Files.createFile(diretorio.resolve("." + destino.getFileName() + "-" + sufixo + ".tmp"));
+                break;
+            } catch (FileAlreadyExistsException e) {
+                // Nome já usado: sorteia outro
+            }
+        }
+        if (Files.exists(destino)) copiarPermissoes(destino, temporario);
+        return temporario;
+    }
+
+    /**
+     * Copia as permissões (POSIX ou, no Windows, a ACL); se não der, o arquivo fica com as padrão
+     */
+    private static void copiarPermissoes(Path origem, Path destino) {
+        try {
+            PosixFileAttributeView posix = Files.getFileAttributeView(origem, PosixFileAttributeView.class);
+            if (posix != null) {
+                Files.setPosixFilePermissions(destino, posix.readAttributes().permissions());
+                return;
+            }
+            AclFileAttributeView acl = Files.getFileAttributeView(origem, AclFileAttributeView.class);
+            AclFileAttributeView aclDestino = Files.getFileAttributeView(destino, AclFileAttributeView.class);
+            if (acl != null && aclDestino != null) aclDestino.setAcl(acl.getAcl());
+        } catch (IOException | UnsupportedOperationException | SecurityException e) {
+            // Mantém as permissões padrão
+        }
+    }
+
+    /**
+     * Codifica os parágrafos (separados por \n) em blocos e os escreve no canal
+     */
+    private void escrever(FileChannel canal) throws IOException {
+        CharsetEncoder encoder = charset.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        ByteBuffer bytes = ByteBuffer.allocateDirect(TAMANHO_BUFFER);
+        if (rico) {
+            ByteBuffer estilos = ByteBuffer.wrap(FormatoRico.codificarEstilos(documento));
+            while (estilos.hasRemaining()) canal.write(estilos);
+        }
+        List<? extends Paragraph<?, ?, ?>> paragrafos = documento.getParagraphs();
+        int total = paragrafos.size();
+
+        for (int i = 0; i < total; i++) {
+            if (isCancelled()) return;
+            codificar(encoder, CharBuffer.wrap(paragrafos.get(i).getText()), bytes, canal, false);
+            if (i < total - 1) codificar(encoder, CharBuffer.wrap("\n"), bytes, canal, false);
+            if ((i & 0xFF) == 0) updateProgress(i, total);
+        }
+        codificar(encoder, CharBuffer.allocate(0), bytes, canal, true);
+        while (encoder.flush(bytes).isOverflow()) despejar(canal, bytes);
+        despejar(canal, bytes);
+        updateProgress(total, total);
+    }
+
+    private static void codificar(CharsetEncoder encoder, CharBuffer caracteres, ByteBuffer bytes,
+                                  FileChannel canal, boolean fim) throws IOException {
+        while (encoder.encode(caracteres, bytes, fim).isOverflow()) {
+            despejar(canal, bytes);  // Buffer cheio: escreve e continua do ponto em que parou
+        }
+    }
+
+    private static void despejar(FileChannel canal, ByteBuffer bytes) throws IOException {
+        bytes.flip();
+        while (bytes.hasRemaining()) canal.write(bytes);
+        bytes.clear();
+    }
+}
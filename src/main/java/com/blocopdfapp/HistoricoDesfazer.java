@@ -0,0 +1,209 @@
+package com.blocopdfapp;
+
+import org.fxmisc.richtext.InlineCssTextArea;
+import org.fxmisc.richtext.model.Paragraph;
+import org.fxmisc.richtext.model.RichTextChange;
+import org.fxmisc.richtext.model.StyledDocument;
+import org.fxmisc.richtext.model.TextChange;
+import org.fxmisc.richtext.util.UndoUtils;
+import org.fxmisc.undo.UndoManager;
+import org.fxmisc.undo.impl.ChangeQueue;
+import org.fxmisc.undo.impl.MultiChangeUndoManagerImpl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Histórico de desfazer/refazer do editor com memória limitada.
+ * Substitui o UndoManager padrão (que guarda todas as alterações) por um com a
+ * mesma lógica do RichTextFX, mas cuja fila de alterações tem um orçamento
+ * aproximado em bytes: ao ultrapassá-lo, as entradas mais antigas são descartadas.
+ * Alterações seguidas (digitação, ou vários estilos aplicados ao mesmo trecho)
+ * são juntadas numa única entrada enquanto não houver pausa.
+ */
+public class HistoricoDesfazer {
+
+    // Estimativa de memória: caracteres em UTF-16 mais o custo fixo de cada parágrafo e de cada entrada
+    private static final int BYTES_POR_CARACTERE = 2;
+    private static final int BYTES_POR_PARAGRAFO = 96;
+    private static final int BYTES_POR_ENTRADA = 64;
+
+    private final FilaLimitada fila;
+    private final UndoManager<List<RichTextChange<String, String, String>>> undoManager;
+
+    /**
+     * Instala o histórico na área de texto (o histórico anterior é descartado)
+     */
+    public HistoricoDesfazer(InlineCssTextArea area, long limiteBytes) {
+        this.fila = new FilaLimitada(limiteBytes);
+        this.undoManager = new MultiChangeUndoManagerImpl<>(fila, TextChange::invert,
+                UndoUtils.applyMultiRichTextChange(area), HistoricoDesfazer::juntar, TextChange::isIdentity,
+                area.multiRichChanges(), UndoUtils.DEFAULT_PREVENT_MERGE_DELAY);
+        area.getUndoManager().close();
+        area.setUndoManager(undoManager);
+    }
+
+    // Diagnóstico
+    public int getEntradas() { return fila.tamanho(); }
+    public long getBytesUsados() { return fila.bytes; }
+    public long getLimiteBytes() { return fila.limiteBytes; }
+    public long getEntradasDescartadas() { return fila.descartadas; }
+
+    /**
+     * Junta duas alterações seguidas: primeiro pela regra do RichTextFX (digitação e
+     * apagamento contíguos); senão, se a segunda cai inteira dentro do trecho inserido
+     * pela primeira (ex.: negrito e depois itálico na mesma seleção), ela é aplicada ao trecho
+     */
+    static Optional<RichTextChange<String, String, String>> juntar(RichTextChange<String, String, String> primeira,
+                                                                  RichTextChange<String, String, String> segunda) {
+        Optional<RichTextChange<String, String, String>> contigua = primeira.mergeWith(segunda);
+        if (contigua.isPresent()) return contigua;
+
+        StyledDocument<String, String, String> inserido = primeira.getInserted();
+        int inicio = segunda.getPosition() - primeira.getPosition();
+        int fim = inicio + segunda.getRemoved().length();
+        if (inicio < 0 || fim > inserido.length()) return Optional.empty();
+
+        StyledDocument<String, String, String> resultado = inserido.subSequence(0, inicio)
+                .concat(segunda.getInserted())
+                .concat(inserido.subSequence(fim, inserido.length()));
+        return Optional.of(new RichTextChange<>(primeira.getPosition(), primeira.getRemoved(), resultado));
+    }
+
+    /**
+     * Memória aproximada de uma entrada (o texto removido e o inserido de cada alteração)
+     */
+    static long estimarBytes(List<RichTextChange<String, String, String>> entrada) {
+        long bytes = BYTES_POR_ENTRADA;
+        for (RichTextChange<String, String, String> mudanca : entrada) {
+            bytes += estimarBytes(mudanca.getRemoved()) + estimarBytes(mudanca.getInserted());
+        }
+        return bytes;
+    }
+
+    private static long estimarBytes(StyledDocument<String, String, String> documento) {
+        long bytes = (long) documento.length() * BYTES_POR_CARACTERE;
+        for (Paragraph<String, String, String> paragrafo : documento.getParagraphs()) {
+            bytes += BYTES_POR_PARAGRAFO + (long) paragrafo.getStyleSpans().getSpanCount() * 16;
+        }
+        return bytes;
+    }
+
+    /**
+     * Fila de alterações com orçamento em bytes. Segue a semântica da fila ilimitada do
+     * UndoFX: as posições guardam a revisão da entrada anterior, e descartar entradas
+     * antigas funciona como esquecer o início do histórico.
+     */
+    private static final class FilaLimitada implements ChangeQueue<List<RichTextChange<String, String, String>>> {
+
+        private final List<List<RichTextChange<String, String, String>>> alteracoes = new ArrayList<>();
+        private final List<Long> revisoes = new ArrayList<>();
+        private final List<Long> tamanhos = new ArrayList<>();
+        private int atual = 0;                // Alterações antes desta posição podem ser desfeitas
+        private long revisao = 0;
+        private long revisaoInicial = 0;      // Revisão da posição 0
+        private int esquecidas = 0;           // Entradas removidas do início desde a criação
+        private long bytes = 0;
+        private final long limiteBytes;
+        private long descartadas = 0;
+
+        FilaLimitada(long limiteBytes) {
+            this.limiteBytes = limiteBytes;
+        }
+
+        int tamanho() { return alteracoes.size(); }
+
+        @Override public boolean hasNext() { return atual < alteracoes.size(); }
+        @Override public boolean hasPrev() { return atual > 0; }
+        @Override public List<RichTextChange<String, String, String>> peekNext() { return alteracoes.get(atual); }
+        @Override public List<RichTextChange<String, String, String>> peekPrev() { return alteracoes.get(atual - 1); }
+        @Override public List<RichTextChange<String, String, String>> next() { return alteracoes.get(atual++); }
+        @Override public List<RichTextChange<String, String, String>> prev() { return alteracoes.get(--atual); }
+
+        @SafeVarargs
+        @Override
+        public final void push(List<RichTextChange<String, String, String>>... novas) {
+            remover(atual, alteracoes.size());  // Uma nova alteração descarta o que podia ser refeito
+            for (List<RichTextChange<String, String, String>> alteracao : novas) {
+                long tamanho = estimarBytes(alteracao);
+                alteracoes.add(alteracao);
+                revisoes.add(++revisao);
+                tamanhos.add(tamanho);
+                bytes += tamanho;
+            }
+            atual += novas.length;
+            aplicarLimite();
+        }
+
+        /**
+         * Descarta as entradas mais antigas até caber no orçamento (a mais recente sempre fica)
+         */
+        private void aplicarLimite() {
+            int excedentes = 0;
+            long restante = bytes;
+            while (restante > limiteBytes && excedentes < atual - 1) {
+                restante -= tamanhos.get(excedentes++);
+            }
+            if (excedentes == 0) return;
+            revisaoInicial = revisoes.get(excedentes - 1);
+            remover(0, excedentes);
+            atual -= excedentes;
+            esquecidas += excedentes;
+            descartadas += excedentes;
+        }
+
+        @Override
+        public void forgetHistory() {
+            if (atual == 0) return;
+            revisaoInicial = revisoes.get(atual - 1);
+            remover(0, atual);
+            esquecidas += atual;
+            atual = 0;
+        }
+
+        @Override
+        public QueuePosition getCurrentPosition() {
+            return new Posicao(esquecidas + atual, revisaoNaPosicao(atual));
+        }
+
+        private long revisaoNaPosicao(int posicao) {
+            return posicao == 0 ? revisaoInicial : revisoes.get(posicao - 1);
+        }
+
+        private void remover(int inicio, int fim) {
+            for (int i = inicio; i < fim; i++) bytes -= tamanhos.get(i);
+            alteracoes.subList(inicio, fim).clear();
+            revisoes.subList(inicio, fim).clear();
+            tamanhos.subList(inicio, fim).clear();
+        }
+
+        private final class Posicao implements QueuePosition {
+            private final int posicaoAbsoluta;
+            private final long revisaoPosicao;
+
+            Posicao(int posicaoAbsoluta, long revisaoPosicao) {
+                this.posicaoAbsoluta = posicaoAbsoluta;
+                this.revisaoPosicao = revisaoPosicao;
+            }
+
+            @Override
+            public boolean isValid() {
+                int posicao = posicaoAbsoluta - esquecidas;
+                return posicao >= 0 && posicao <= alteracoes.size() && revisaoPosicao == revisaoNaPosicao(posicao);
+            }
+
+            @Override
+            public boolean equals(Object outro) {
+                if (!(outro instanceof Posicao)) return false;
+                Posicao posicao = (Posicao) outro;
+                return posicaoAbsoluta == posicao.posicaoAbsoluta && revisaoPosicao == posicao.revisaoPosicao;
+            }
+
+            @Override
+            public int hashCode() {
+                return Long.hashCode(revisaoPosicao) * 31 + posicaoAbsoluta;
+            }
+        }
+    }
+}
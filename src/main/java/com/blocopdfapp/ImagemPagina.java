@@ -0,0 +1,134 @@
+package com.blocopdfapp;
+
+import javafx.scene.image.Image;
+import javafx.scene.image.ImageView;
+import javafx.scene.image.PixelBuffer;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.awt.image.DirectColorModel;
+import java.awt.image.Raster;
+import java.awt.image.WritableRaster;
+import java.nio.IntBuffer;
+
+/**
+ * Imagem JavaFX que compartilha os pixels com um BufferedImage.
+ * O PDFBox desenha diretamente no BufferedImage e o JavaFX lê o mesmo int[]
+ * através de um PixelBuffer, sem a cópia feita pelo SwingFXUtils.toFXImage.
+ * As imagens são reaproveitadas via PoolImagens: uma imagem volta ao pool quando
+ * foi descartada (saiu do cache ou nunca entrou nele) e não está mais na tela.
+ */
+public class ImagemPagina extends WritableImage {
+
+    private final BufferedImage raster;
+    private final PixelBuffer<IntBuffer> pixelBuffer;
+    private final PoolImagens pool;
+    private int usos = 0;
+    private boolean descartada = false;
+
+    private ImagemPagina(BufferedImage raster, PixelBuffer<IntBuffer> pixelBuffer, PoolImagens pool) {
+        super(pixelBuffer);
+        this.raster = raster;
+        this.pixelBuffer = pixelBuffer;
+        this.pool = pool;
+    }
+
+    /**
+     * Cria uma nova imagem com buffer compartilhado (usado pelo pool)
+     */
+    static ImagemPagina criar(int largura, int altura, PoolImagens pool) {
+        BufferedImage raster = new BufferedImage(largura, altura, BufferedImage.TYPE_INT_ARGB_PRE);
+        int[] pixels = ((DataBufferInt) raster.getRaster().getDataBuffer()).getData();
+        PixelBuffer<IntBuffer> pixelBuffer = new PixelBuffer<>(largura, altura, IntBuffer.wrap(pixels),
+                PixelFormat.getIntArgbPreInstance());
+        return new ImagemPagina(raster, pixelBuffer, pool);
+    }
+
+    /**
+     * Prepara o buffer para um novo desenho: fundo branco.
+     * Deve ser chamado fora da tela (imagem recém-obtida do pool).
+     */
+    public Graphics2D iniciarDesenho() {
+        Graphics2D g = raster.createGraphics();
+        g.setBackground(Color.WHITE);
+        g.clearRect(0, 0, raster.getWidth(), raster.getHeight());
+        return g;
+    }
+
+    /**
+     * Avisa o JavaFX que os pixels mudaram (na JavaFX Application Thread)
+     */
+    public void publicar() {
+        pixelBuffer.updateBuffer(buffer -> null);
+    }
+
+    /**
+     * Visão opaca (RGB) dos mesmos pixels, sem cópia, para codificar a imagem
+     * (as páginas têm fundo branco, então o canal alfa não carrega informação)
+     */
+    BufferedImage comoRGB() {
+        DirectColorModel modelo = new DirectColorModel(24, 0xFF0000, 0x00FF00, 0x0000FF);
+        WritableRaster pixels = Raster.createPackedRaster(raster.getRaster().getDataBuffer(),
+                raster.getWidth(), raster.getHeight(), raster.getWidth(), modelo.getMasks(), null);
+        return new BufferedImage(modelo, pixels, false, null);
+    }
+
+    /**
+     * Registra um uso (ex.: um ImageView exibindo a imagem)
+     */
+    public synchronized void reter() {
+        usos++;
+    }
+
+    /**
+     * Libera um uso; a imagem volta ao pool se já tiver sido descartada
+     */
+    public void liberar() {
+        boolean devolver;
+        synchronized (this) {
+            usos--;
+            devolver = descartada && usos == 0;
+        }
+        if (devolver) devolverAoPool();
+    }
+
+    /**
+     * Marca a imagem como descartada (removida do cache ou não guardada nele)
+     */
+    public void descartar() {
+        boolean devolver;
+        synchronized (this) {
+            if (descartada) return;
+            descartada = true;
+            devolver = usos == 0;
+        }
+        if (devolver) devolverAoPool();
+    }
+
+    /**
+     * Reinicia o estado ao sair do pool
+     */
+    synchronized void reiniciar() {
+        usos = 1;  // O uso inicial pertence a quem obteve a imagem do pool
+        descartada = false;
+    }
+
+    private void devolverAoPool() {
+        pool.devolver(this);
+    }
+
+    /**
+     * Troca a imagem de um ImageView mantendo a contagem de usos das imagens do pool
+     */
+    public static void exibir(ImageView view, Image nova) {
+        Image antiga = view.getImage();
+        if (antiga == nova) return;
+        if (nova instanceof ImagemPagina) ((ImagemPagina) nova).reter();
+        view.setImage(nova);
+        if (antiga instanceof ImagemPagina) ((ImagemPagina) antiga).liberar();
+    }
+}
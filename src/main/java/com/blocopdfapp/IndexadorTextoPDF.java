@@ -0,0 +1,171 @@
+package com.blocopdfapp;
+
+import org.apache.pdfbox.io.MemoryUsageSetting;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.text.PDFTextStripper;
+import org.apache.pdfbox.text.TextPosition;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+
+/**
+ * Extrai o texto de um PDF aberto em segundo plano e monta o IndiceTextoPDF.
+ * As páginas são divididas em faixas contíguas, uma por núcleo; cada faixa abre o
+ * próprio PDDocument (que não é thread-safe) e passa pelo PDFTextStripper uma única vez.
+ * As threads têm prioridade mínima para não atrasar a renderização das páginas.
+ * Um novo pedido (ou cancelar) descarta a extração em andamento.
+ */
+public class IndexadorTextoPDF {
+
+    private static final int PAGINAS_MINIMAS_POR_FAIXA = 16;
+    private static final int PAGINAS_POR_AVISO = 16;
+
+    private final int trabalhadores = Math.max(1, Runtime.getRuntime().availableProcessors());
+    private final ExecutorService executor;
+    private final AtomicLong geracao = new AtomicLong();
+
+    public IndexadorTextoPDF() {
+        executor = Executors.newFixedThreadPool(trabalhadores, r -> {
+            Thread thread = new Thread(r, "indexador-pdf");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+    }
+
+    /**
+     * Inicia a indexação. aoProgresso recebe o número de páginas lidas e aoConcluir o
+     * índice pronto; ambos são chamados em threads de fundo, e nunca para um pedido cancelado.
+     */
+    public void indexar(File arquivo, int paginas, long limiteMemoria, IntConsumer aoProgresso,
+                        Consumer<IndiceTextoPDF> aoConcluir) {
+        long pedido = geracao.incrementAndGet();
+        int faixas = Math.max(1, Math.min(trabalhadores, paginas / PAGINAS_MINIMAS_POR_FAIXA));
+        MemoryUsageSetting memoria = MemoryUsageSetting.setupMixed(Math.max(1, limiteMemoria / faixas));
+        IndiceTextoPDF.Pagina[] resultado = new IndiceTextoPDF.Pagina[paginas];
+        AtomicInteger lidas = new AtomicInteger();
+
+        CompletableFuture<?>[] tarefas = new CompletableFuture<?>[faixas];
+        for (int i = 0; i < faixas; i++) {
+            int inicio = (int) ((long) paginas * i / faixas);
+            int fim = (int) ((long) paginas * (i + 1) / faixas);
+            tarefas[i] = CompletableFuture.runAsync(() -> {
+                try (PDDocument documento = PDDocument.load(arquivo, memoria)) {
+                    new Extrator(pedido, resultado, lidas, aoProgresso).extrair(documento, inicio, fim);
+                } catch (IOException | RuntimeException e) {
+                    // Conteúdo malformado costuma gerar exceções não verificadas no PDFBox. As páginas
+                    // não lidas da faixa ficam sem texto (o índice as informa); as demais continuam
+                    // pesquisáveis, e o índice é montado mesmo assim
+                }
+            }, executor);
+        }
+        // whenComplete: o índice sai mesmo se uma faixa terminar com erro (ex.: StackOverflowError)
+        CompletableFuture.allOf(tarefas).whenCompleteAsync((ignorado, erro) -> {
+            if (geracao.get() != pedido) return;
+            IndiceTextoPDF indice = IndiceTextoPDF.construir(resultado);
+            if (geracao.get() == pedido) aoConcluir.accept(indice);
+        }, executor);
+    }
+
+    /**
+     * Descarta a indexação em andamento (as threads param na próxima página)
+     */
+    public void cancelar() {
+        geracao.incrementAndGet();
+    }
+
+    public void encerrar() {
+        cancelar();
+        executor.shutdownNow();
+    }
+
+    /**
+     * PDFTextStripper que guarda, em vez do texto formatado, cada caractere normalizado e
+     * seu retângulo, entregando uma página a cada fim de página
+     */
+    private final class Extrator extends PDFTextStripper {
+        private final long pedido;
+        private final IndiceTextoPDF.Pagina[] resultado;
+        private final AtomicInteger lidas;
+        private final IntConsumer aoProgresso;
+        private final StringBuilder texto = new StringBuilder();
+        private char[] caixas = new char[4096];
+
+        Extrator(long pedido, IndiceTextoPDF.Pagina[] resultado, AtomicInteger lidas, IntConsumer aoProgresso)
+                throws IOException {
+            this.pedido = pedido;
+            this.resultado = resultado;
+            this.lidas = lidas;
+            this.aoProgresso = aoProgresso;
+        }
+
+        void extrair(PDDocument documento, int inicio, int fim) throws IOException {
+            setStartPage(inicio + 1);
+            setEndPage(fim);
+            try {
+                writeText(documento, Writer.nullWriter());
+            } catch (CancellationException e) {
+                // Pedido substituído: o resultado é descartado
+            }
+        }
+
+        @Override
+        protected void writeString(String textoOriginal, List<TextPosition> posicoes) {
+            for (TextPosition posicao : posicoes) {
+                String unicode = posicao.getUnicode();
+                if (unicode == null || unicode.isEmpty()) continue;
+                float altura = posicao.getHeightDir() > 0 ? posicao.getHeightDir() : posicao.getFontSizeInPt();
+                float largura = posicao.getWidthDirAdj() / unicode.length();  // Ligaduras: divide a largura
+                for (int i = 0; i < unicode.length(); i++) {
+                    adicionar(unicode.charAt(i), posicao.getX() + largura * i, posicao.getY() - altura, largura, altura);
+                }
+            }
+        }
+
+        @Override
+        protected void writeWordSeparator() {
+            adicionar(' ', 0, 0, 0, 0);
+        }
+
+        @Override
+        protected void writeLineSeparator() {
+            adicionar(' ', 0, 0, 0, 0);
+        }
+
+        @Override
+        protected void endPage(PDPage pagina) {
+            if (geracao.get() != pedido || Thread.currentThread().isInterrupted()) throw new CancellationException();
+            resultado[getCurrentPageNo() - 1] = new IndiceTextoPDF.Pagina(texto.toString(),
+                    Arrays.copyOf(caixas, texto.length() * 4));
+            texto.setLength(0);
+            int total = lidas.incrementAndGet();
+            if (total % PAGINAS_POR_AVISO == 0) aoProgresso.accept(total);
+        }
+
+        private void adicionar(char c, float x, float y, float largura, float altura) {
+            int i = texto.length() * 4;
+            if (i + 4 > caixas.length) caixas = Arrays.copyOf(caixas, caixas.length * 2);
+            caixas[i] = quantizar(x);
+            caixas[i + 1] = quantizar(y);
+            caixas[i + 2] = quantizar(largura);
+            caixas[i + 3] = quantizar(altura);
+            texto.append(IndiceTextoPDF.normalizar(c));
+        }
+
+        private char quantizar(float pontos) {
+            return (char) Math.max(0, Math.min(Character.MAX_VALUE, Math.round(pontos * IndiceTextoPDF.ESCALA_CAIXAS)));
+        }
+    }
+}
@@ -0,0 +1,236 @@
+package com.blocopdfapp;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Texto extraído de um PDF, com um índice invertido para busca instantânea.
+ *
+ * O texto de cada página fica normalizado (minúsculas, sem acentos, espaços unificados)
+ * com o mesmo comprimento do original, e cada caractere guarda o retângulo que ocupa na
+ * página, para destacar as ocorrências sem voltar ao PDF. O índice leva cada palavra às
+ * posições (página, deslocamento) em que aparece; a busca encontra as palavras que começam
+ * com o início da consulta e confere o restante no texto da página.
+ */
+public final class IndiceTextoPDF {
+
+    static final float ESCALA_CAIXAS = 8;           // Retângulos em oitavos de ponto, em 16 bits
+    private static final int LIMITE_OCORRENCIAS = 10_000;
+
+    private final Pagina[] paginas;
+    private final TreeMap<String, int[]> termos;   // Pares (página, deslocamento), em ordem de leitura
+    private final BitSet falhas;                   // Páginas cujo texto não pôde ser extraído
+
+    private IndiceTextoPDF(Pagina[] paginas, TreeMap<String, int[]> termos, BitSet falhas) {
+        this.paginas = paginas;
+        this.termos = termos;
+        this.falhas = falhas;
+    }
+
+    public int getTotalPaginas() { return paginas.length; }
+    public int getTotalTermos() { return termos.size(); }
+    public int getTotalPaginasSemTexto() { return falhas.cardinality(); }
+
+    /**
+     * Páginas cujo texto não pôde ser extraído, numeradas a partir de 1 e agrupadas em
+     * faixas (ex.: "3–5, 9"); vazio se todas foram lidas
+     */
+    public String descreverPaginasSemTexto() {
+        StringBuilder descricao = new StringBuilder();
+        for (int inicio = falhas.nextSetBit(0); inicio >= 0; inicio = falhas.nextSetBit(inicio)) {
+            int fim = falhas.nextClearBit(inicio);
+            if (descricao.length() > 0) descricao.append(", ");
+            descricao.append(inicio + 1);
+            if (fim - 1 > inicio) descricao.append('–').append(fim);
+            inicio = fim;
+        }
+        return descricao.toString();
+    }
+
+    /**
+     * Texto normalizado de uma página e o retângulo (x, y, largura, altura) de cada caractere
+     */
+    static final class Pagina {
+        static final Pagina VAZIA = new Pagina("", new char[0]);
+
+        final String texto;
+        final char[] caixas;
+
+        Pagina(String texto, char[] caixas) {
+            this.texto = texto;
+            this.caixas = caixas;
+        }
+    }
+
+    /**
+     * Ocorrência da consulta: página e intervalo [inicio, fim) no texto da página
+     */
+    public static final class Ocorrencia {
+        private final int pagina;
+        private final int inicio;
+        private final int fim;
+
+        Ocorrencia(int pagina, int inicio, int fim) {
+            this.pagina = pagina;
+            this.inicio = inicio;
+            this.fim = fim;
+        }
+
+        public int getPagina() { return pagina; }
+        public int getInicio() { return inicio; }
+        public int getFim() { return fim; }
+    }
+
+    /**
+     * Monta o índice das páginas extraídas (páginas nulas, que falharam, ficam sem texto)
+     */
+    static IndiceTextoPDF construir(Pagina[] paginas) {
+        Map<String, Postagens> postagens = new HashMap<>();
+        BitSet falhas = new BitSet(paginas.length);
+        for (int p = 0; p < paginas.length; p++) {
+            if (paginas[p] == null) {
+                paginas[p] = Pagina.VAZIA;
+                falhas.set(p);
+            }
+            String texto = paginas[p].texto;
+            int i = 0;
+            while (i < texto.length()) {
+                if (!Character.isLetterOrDigit(texto.charAt(i))) {
+                    i++;
+                    continue;
+                }
+                int inicio = i;
+                while (i < texto.length() && Character.isLetterOrDigit(texto.charAt(i))) i++;
+                postagens.computeIfAbsent(texto.substring(inicio, i), t -> new Postagens()).adicionar(p, inicio);
+            }
+        }
+        TreeMap<String, int[]> termos = new TreeMap<>();
+        postagens.forEach((termo, lista) -> termos.put(termo, Arrays.copyOf(lista.dados, lista.tamanho)));
+        return new IndiceTextoPDF(paginas, termos, falhas);
+    }
+
+    /**
+     * Ocorrências da consulta em ordem de leitura (até LIMITE_OCORRENCIAS). A consulta
+     * precisa começar no início de uma palavra; maiúsculas e acentos são ignorados.
+     */
+    public List<Ocorrencia> buscar(String consulta) {
+        String normalizada = normalizarConsulta(consulta);
+        if (normalizada.isEmpty()) return List.of();
+        int fimPalavra = 0;
+        while (fimPalavra < normalizada.length() && Character.isLetterOrDigit(normalizada.charAt(fimPalavra))) {
+            fimPalavra++;
+        }
+        if (fimPalavra == 0) return buscarSequencial(normalizada);  // Começa com pontuação: não há termo
+
+        // Posições das palavras com o prefixo, ordenadas como (página << 32 | deslocamento)
+        String prefixo = normalizada.substring(0, fimPalavra);
+        int total = 0;
+        List<int[]> listas = new ArrayList<>();
+        for (int[] lista : termos.subMap(prefixo, prefixo + Character.MAX_VALUE).values()) {
+            listas.add(lista);
+            total += lista.length / 2;
+        }
+        long[] candidatos = new long[total];
+        int n = 0;
+        for (int[] lista : listas) {
+            for (int i = 0; i < lista.length; i += 2) candidatos[n++] = ((long) lista[i] << 32) | lista[i + 1];
+        }
+        if (listas.size() > 1) Arrays.sort(candidatos);
+
+        List<Ocorrencia> ocorrencias = new ArrayList<>();
+        boolean soPrefixo = fimPalavra == normalizada.length();
+        for (long candidato : candidatos) {
+            int pagina = (int) (candidato >>> 32);
+            int inicio = (int) candidato;
+            if (soPrefixo || paginas[pagina].texto.startsWith(normalizada, inicio)) {
+                ocorrencias.add(new Ocorrencia(pagina, inicio, inicio + normalizada.length()));
+                if (ocorrencias.size() == LIMITE_OCORRENCIAS) break;
+            }
+        }
+        return ocorrencias;
+    }
+
+    private List<Ocorrencia> buscarSequencial(String normalizada) {
+        List<Ocorrencia> ocorrencias = new ArrayList<>();
+        for (int p = 0; p < paginas.length && ocorrencias.size() < LIMITE_OCORRENCIAS; p++) {
+            String texto = paginas[p].texto;
+            for (int i = texto.indexOf(normalizada); i >= 0 && ocorrencias.size() < LIMITE_OCORRENCIAS;
+                 i = texto.indexOf(normalizada, i + 1)) {
+                ocorrencias.add(new Ocorrencia(p, i, i + normalizada.length()));
+            }
+        }
+        return ocorrencias;
+    }
+
+    /**
+     * Retângulos da ocorrência em pontos, com origem no canto superior esquerdo da página
+     * já rotacionada: grupos de (x, y, largura, altura), um por linha de texto
+     */
+    public float[] retangulos(Ocorrencia ocorrencia) {
+        char[] caixas = paginas[ocorrencia.pagina].caixas;
+        float[] resultado = new float[16];
+        int n = 0;
+        for (int i = ocorrencia.inicio; i < ocorrencia.fim && i * 4 + 3 < caixas.length; i++) {
+            float x = caixas[i * 4] / ESCALA_CAIXAS;
+            float y = caixas[i * 4 + 1] / ESCALA_CAIXAS;
+            float largura = caixas[i * 4 + 2] / ESCALA_CAIXAS;
+            float altura = caixas[i * 4 + 3] / ESCALA_CAIXAS;
+            if (largura == 0 || altura == 0) continue;  // Separador inserido pela extração
+            // Mesmo alinhamento vertical que o retângulo anterior: estende-o
+            if (n > 0 && Math.abs(resultado[n - 3] - y) < 1 && Math.abs(resultado[n - 1] - altura) < 1
+                    && x >= resultado[n - 4]) {
+                resultado[n - 2] = Math.max(resultado[n - 2], x + largura - resultado[n - 4]);
+                continue;
+            }
+            if (n == resultado.length) resultado = Arrays.copyOf(resultado, n * 2);
+            resultado[n++] = x;
+            resultado[n++] = y;
+            resultado[n++] = largura;
+            resultado[n++] = altura;
+        }
+        return Arrays.copyOf(resultado, n);
+    }
+
+    /**
+     * Forma de um caractere usada no índice: minúscula, sem acento, espaços como ' '.
+     * Sempre um único caractere, para que as posições coincidam com as do texto original.
+     */
+    static char normalizar(char c) {
+        if (Character.isWhitespace(c) || Character.isSpaceChar(c)) return ' ';
+        if (c < 0x80) return Character.toLowerCase(c);
+        String decomposto = Normalizer.normalize(String.valueOf(c), Normalizer.Form.NFD);
+        return Character.toLowerCase(decomposto.isEmpty() ? c : decomposto.charAt(0));
+    }
+
+    private static String normalizarConsulta(String consulta) {
+        StringBuilder resultado = new StringBuilder(consulta.length());
+        for (int i = 0; i < consulta.length(); i++) {
+            char c = normalizar(consulta.charAt(i));
+            if (c == ' ' && (resultado.length() == 0 || resultado.charAt(resultado.length() - 1) == ' ')) continue;
+            resultado.append(c);
+        }
+        int fim = resultado.length();
+        while (fim > 0 && resultado.charAt(fim - 1) == ' ') fim--;
+        return resultado.substring(0, fim);
+    }
+
+    /**
+     * Lista crescente de pares (página, deslocamento) de um termo
+     */
+    private static final class Postagens {
+        private int[] dados = new int[4];
+        private int tamanho = 0;
+
+        void adicionar(int pagina, int deslocamento) {
+            if (tamanho + 2 > dados.length) dados = Arrays.copyOf(dados, dados.length * 2);
+            dados[tamanho++] = pagina;
+            dados[tamanho++] = deslocamento;
+        }
+    }
+}
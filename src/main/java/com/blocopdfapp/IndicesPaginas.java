@@ -0,0 +1,17 @@
+package com.blocopdfapp;
+
+import javafx.collections.ObservableListBase;
+
+/**
+ * Lista "virtual" com os índices das páginas (0 a total - 1), usada pelas listas
+ * virtualizadas do visualizador PDF: não aloca um elemento por página
+ */
+class IndicesPaginas extends ObservableListBase<Integer> {
+
+    private final int total;
+
+    IndicesPaginas(int total) { this.total = total; }
+
+    @Override public Integer get(int index) { return index; }
+    @Override public int size() { return total; }
+}
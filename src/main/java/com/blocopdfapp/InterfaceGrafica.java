@@ -128,11 +128,7 @@ public class InterfaceGrafica extends Application {
             File file = fileChooser.showSaveDialog(primaryStage);
             
             if (file != null) {
-                // Simula exportação (funcionalidade básica)
-                String texto = blocoDeNotas.getText();
-                new Alert(Alert.AlertType.INFORMATION, 
-                         "Funcionalidade de exportação em desenvolvimento.\n" +
-                         "Texto pronto para exportação: " + texto.length() + " caracteres.").showAndWait();
+                blocoDeNotas.exportarPDF(file);  // Em segundo plano, com progresso na barra do editor
             }
         } catch (Exception e) {
             mostrarErro("Erro ao exportar PDF", e.getMessage());
@@ -156,8 +152,11 @@ public class InterfaceGrafica extends Application {
      */
     @Override
     public void stop() throws Exception {
+        if (blocoDeNotas != null) {
+            blocoDeNotas.encerrar();  // Grava o diário de edições pendente
+        }
         if (editPDF != null) {
-            editPDF.close();  // Fecha o documento PDF
+            editPDF.dispose();  // Fecha o documento PDF e a thread de renderização
         }
         super.stop();
     }
@@ -0,0 +1,86 @@
+package com.blocopdfapp;
+
+import org.apache.fontbox.ttf.TrueTypeFont;
+import org.apache.pdfbox.pdmodel.font.PDFont;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Larguras dos caracteres de uma fonte PDF, consultadas na quebra de linhas da exportação.
+ * Perguntar a largura à fonte exige codificar o caractere e procurar o glifo; aqui isso é
+ * feito uma vez por bloco de 256 caracteres, e os blocos ficam guardados enquanto a fonte
+ * existir. Uma instância por fonte (padrão do PDF ou TrueType do sistema), compartilhada
+ * por todas as exportações.
+ */
+final class MetricasFonte {
+
+    private static final Map<Object, MetricasFonte> porFonte = new ConcurrentHashMap<>();
+
+    private final Object fonte;
+    private final Medidor medidor;
+    // Largura (em milésimos do tamanho da fonte) por caractere; NaN = a fonte não tem o caractere
+    private final AtomicReferenceArray<float[]> blocos = new AtomicReferenceArray<>(256);
+
+    private MetricasFonte(Object fonte, Medidor medidor) {
+        this.fonte = fonte;
+        this.medidor = medidor;
+    }
+
+    static MetricasFonte de(PDFont fonte) {
+        return porFonte.computeIfAbsent(fonte, f -> new MetricasFonte(f, c -> fonte.getStringWidth(String.valueOf(c))));
+    }
+
+    static MetricasFonte de(TrueTypeFont fonte) {
+        return porFonte.computeIfAbsent(fonte, f -> new MetricasFonte(f, c -> {
+            int glifo = fonte.getUnicodeCmapLookup(false).getGlyphId(c);
+            if (glifo == 0) return Float.NaN;
+            return fonte.getAdvanceWidth(glifo) * 1000f / fonte.getUnitsPerEm();
+        }));
+    }
+
+    /**
+     * Indica se a fonte consegue desenhar o caractere
+     */
+    boolean suporta(char c) {
+        return !Float.isNaN(largura(c));
+    }
+
+    /**
+     * Largura do caractere em milésimos do tamanho da fonte (NaN se não houver)
+     */
+    float largura(char c) {
+        float[] bloco = blocos.get(c >>> 8);
+        if (bloco == null) {
+            bloco = calcularBloco(c >>> 8);
+            blocos.compareAndSet(c >>> 8, null, bloco);  // Outra thread pode ter calculado o mesmo bloco
+        }
+        return bloco[c & 0xFF];
+    }
+
+    private float[] calcularBloco(int indice) {
+        synchronized (fonte) {  // A leitura de glifos e o cache de larguras do PDFBox não são seguros entre threads
+            return calcularBlocoSincronizado(indice);
+        }
+    }
+
+    private float[] calcularBlocoSincronizado(int indice) {
+        float[] bloco = new float[256];
+        for (int i = 0; i < 256; i++) {
+            char c = (char) ((indice << 8) | i);
+            try {
+                bloco[i] = Character.isISOControl(c) || Character.isSurrogate(c)
+                        ? Float.NaN : medidor.largura(c);
+            } catch (IOException | IllegalArgumentException e) {
+                bloco[i] = Float.NaN;  // Caractere fora da codificação da fonte
+            }
+        }
+        return bloco;
+    }
+
+    private interface Medidor {
+        float largura(char c) throws IOException;
+    }
+}
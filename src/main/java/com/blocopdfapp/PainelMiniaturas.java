@@ -0,0 +1,260 @@
+package com.blocopdfapp;
+
+import javafx.collections.ListChangeListener;
+import javafx.geometry.Insets;
+import javafx.geometry.Pos;
+import javafx.scene.Node;
+import javafx.scene.control.Label;
+import javafx.scene.image.Image;
+import javafx.scene.image.ImageView;
+import javafx.scene.layout.StackPane;
+import javafx.scene.layout.VBox;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.fxmisc.flowless.Cell;
+import org.fxmisc.flowless.VirtualFlow;
+import org.fxmisc.flowless.VirtualizedScrollPane;
+
+import java.util.BitSet;
+import java.util.concurrent.Future;
+import java.util.function.IntConsumer;
+
+/**
+ * Barra lateral com miniaturas das páginas para navegação rápida.
+ * A lista é virtualizada (só existem nós para as miniaturas visíveis) e as miniaturas
+ * são geradas em resolução muito baixa: primeiro as visíveis, depois, em lote e com a
+ * menor prioridade, as vizinhas da área visível até preencher o cache próprio das
+ * miniaturas, separado do cache das páginas em resolução normal.
+ */
+public class PainelMiniaturas {
+
+    private static final double LARGURA_MINIATURA = 90;
+    private static final long LIMITE_CACHE_MINIATURAS = 16L * 1024 * 1024;
+    private static final double FRACAO_CACHE_LOTE = 0.75;  // O lote não ocupa o cache inteiro
+
+    private final RenderizadorPDF renderizador;
+    private final CachePaginas cacheMiniaturas = new CachePaginas(LIMITE_CACHE_MINIATURAS);
+    private final StackPane container = new StackPane();
+
+    private VirtualFlow<Integer, CelulaMiniatura> fluxo;
+    private PDDocument documento;
+    private long documentoId;
+    private float[] larguras;
+    private float[] alturas;
+    private int paginaAtual = -1;
+    private final BitSet falhas = new BitSet();  // Páginas cuja miniatura não pôde ser gerada
+    private boolean loteEmAndamento = false;
+    private long geracaoLote = 0;                // Invalida a cadeia de lote anterior a cada exibição
+    private IntConsumer onPaginaSelecionada;
+
+    /**
+     * Célula reciclável com a miniatura e o número da página
+     */
+    private class CelulaMiniatura implements Cell<Integer, VBox> {
+        private final VBox node = new VBox(3);
+        private final StackPane folha = new StackPane();
+        private final ImageView imageView = new ImageView();
+        private final Label numero = new Label();
+        private Future<?> pedido;
+        private int pagina = -1;
+
+        CelulaMiniatura(int pagina) {
+            folha.setStyle("-fx-background-color: white;");
+            folha.getChildren().add(imageView);
+            node.setAlignment(Pos.CENTER);
+            node.setPadding(new Insets(6));
+            node.getChildren().addAll(folha, numero);
+            node.setOnMouseClicked(e -> {
+                if (onPaginaSelecionada != null && this.pagina >= 0) onPaginaSelecionada.accept(this.pagina);
+            });
+            updateItem(pagina);
+        }
+
+        @Override public VBox getNode() { return node; }
+        @Override public boolean isReusable() { return true; }
+
+        @Override
+        public void updateItem(Integer novaPagina) {
+            cancelarPedido();
+            pagina = novaPagina;
+            numero.setText(String.valueOf(pagina + 1));
+            atualizarDestaque();
+
+            float escala = escalaMiniatura(pagina);
+            double largura = larguras[pagina] * escala;
+            double altura = alturas[pagina] * escala;
+            folha.setMinSize(largura, altura);
+            folha.setPrefSize(largura, altura);
+            folha.setMaxSize(largura, altura);
+            imageView.setFitWidth(largura);
+            imageView.setFitHeight(altura);
+
+            CachePaginas.Chave chave = new CachePaginas.Chave(documentoId, pagina, escala);
+            Image emCache = cacheMiniaturas.get(chave);
+            ImagemPagina.exibir(imageView, emCache);
+            if (emCache != null) return;
+
+            int paginaPedida = pagina;
+            pedido = renderizador.renderizarMiniatura(documento, pagina, escala, true, imagem -> {
+                if (imagem == null) {
+                    if (chave.documento() == documentoId) falhas.set(paginaPedida);
+                    return;
+                }
+                cacheMiniaturas.put(chave, imagem);
+                if (pagina == paginaPedida) ImagemPagina.exibir(imageView, imagem);
+            });
+        }
+
+        @Override
+        public void reset() {
+            cancelarPedido();
+            ImagemPagina.exibir(imageView, null);
+            pagina = -1;
+        }
+
+        @Override
+        public void dispose() {
+            reset();
+        }
+
+        void atualizarDestaque() {
+            folha.setStyle(pagina == paginaAtual
+                    ? "-fx-background-color: white; -fx-border-color: #3875d7; -fx-border-width: 2;"
+                    : "-fx-background-color: white; -fx-border-color: #bbbbbb; -fx-border-width: 1;");
+        }
+
+        private void cancelarPedido() {
+            if (pedido != null) {
+                pedido.cancel(false);
+                pedido = null;
+            }
+        }
+    }
+
+    /**
+     * Construtor - compartilha o renderizador do visualizador
+     */
+    public PainelMiniaturas(RenderizadorPDF renderizador) {
+        this.renderizador = renderizador;
+        container.setPrefWidth(LARGURA_MINIATURA + 40);
+        container.setStyle("-fx-background-color: #e0e0e0;");
+    }
+
+    /**
+     * Define o callback chamado quando o usuário clica numa miniatura
+     */
+    public void setOnPaginaSelecionada(IntConsumer onPaginaSelecionada) { this.onPaginaSelecionada = onPaginaSelecionada; }
+
+    /**
+     * Monta a lista de miniaturas para o documento. Para o mesmo documento (por exemplo,
+     * quando as dimensões reais das páginas ficam prontas), as miniaturas já geradas são mantidas.
+     */
+    public void exibir(PDDocument documento, long documentoId, float[] larguras, float[] alturas, int paginaAtual) {
+        if (documento != this.documento || documentoId != this.documentoId) {
+            limpar();
+        } else if (fluxo != null) {
+            fluxo.dispose();
+        }
+        geracaoLote++;
+        loteEmAndamento = false;
+        this.documento = documento;
+        this.documentoId = documentoId;
+        this.larguras = larguras;
+        this.alturas = alturas;
+        this.paginaAtual = paginaAtual;
+
+        fluxo = VirtualFlow.createVertical(new IndicesPaginas(larguras.length), CelulaMiniatura::new);
+        fluxo.visibleCells().addListener((ListChangeListener<CelulaMiniatura>) c -> gerarLote());
+        container.getChildren().setAll(new VirtualizedScrollPane<>(fluxo));
+        if (paginaAtual >= 0) fluxo.show(paginaAtual);
+    }
+
+    /**
+     * Destaca a página atual e a mantém visível na lista
+     */
+    public void marcarPaginaAtual(int pagina) {
+        if (fluxo == null || pagina == paginaAtual) return;
+        paginaAtual = pagina;
+        fluxo.visibleCells().forEach(CelulaMiniatura::atualizarDestaque);
+        fluxo.show(pagina);
+    }
+
+    /**
+     * Remove as miniaturas (o cache também, pois pertence ao documento anterior)
+     */
+    public void limpar() {
+        if (fluxo != null) {
+            fluxo.dispose();
+            fluxo = null;
+        }
+        container.getChildren().clear();
+        cacheMiniaturas.clear();
+        falhas.clear();
+        documento = null;
+        geracaoLote++;
+        loteEmAndamento = false;
+    }
+
+    /**
+     * Retorna o componente visual da barra de miniaturas
+     */
+    public Node getView() {
+        return container;
+    }
+
+    /**
+     * Gera, uma por vez, a próxima miniatura que falta a partir da área visível.
+     * Cada miniatura pronta agenda a seguinte, e a busca parte sempre da posição
+     * atual da rolagem, de modo que a geração acompanha o usuário. Páginas que falharam
+     * não são tentadas de novo.
+     */
+    private void gerarLote() {
+        if (loteEmAndamento || fluxo == null || fluxo.visibleCells().isEmpty()) return;
+        if (cacheMiniaturas.getBytesUsados() >= cacheMiniaturas.getLimiteBytes() * FRACAO_CACHE_LOTE) return;
+
+        int pagina = proximaSemMiniatura();
+        if (pagina < 0) return;
+
+        loteEmAndamento = true;
+        float escala = escalaMiniatura(pagina);
+        CachePaginas.Chave chave = new CachePaginas.Chave(documentoId, pagina, escala);
+        long idLote = geracaoLote;
+        renderizador.renderizarMiniatura(documento, pagina, escala, false, imagem -> {
+            if (geracaoLote != idLote) return;  // Cadeia substituída por uma nova exibição
+            loteEmAndamento = false;
+            if (imagem == null) {
+                falhas.set(pagina);
+            } else {
+                cacheMiniaturas.put(chave, imagem);
+                if (fluxo != null) {
+                    fluxo.getCellIfVisible(pagina).ifPresent(celula -> celula.updateItem(pagina));
+                }
+            }
+            gerarLote();
+        });
+    }
+
+    /**
+     * Procura, alternando para baixo e para cima a partir das células visíveis,
+     * a página mais próxima que ainda não tem miniatura
+     */
+    private int proximaSemMiniatura() {
+        int primeira = fluxo.getFirstVisibleIndex();
+        int ultima = fluxo.getLastVisibleIndex();
+        for (int distancia = 1; distancia <= larguras.length; distancia++) {
+            int abaixo = ultima + distancia;
+            int acima = primeira - distancia;
+            if (abaixo >= larguras.length && acima < 0) break;
+            if (abaixo < larguras.length && !temMiniatura(abaixo)) return abaixo;
+            if (acima >= 0 && !temMiniatura(acima)) return acima;
+        }
+        return -1;
+    }
+
+    private boolean temMiniatura(int pagina) {
+        return falhas.get(pagina) || cacheMiniaturas.contem(new CachePaginas.Chave(documentoId, pagina, escalaMiniatura(pagina)));
+    }
+
+    private float escalaMiniatura(int pagina) {
+        return (float) (LARGURA_MINIATURA / Math.max(1f, larguras[pagina]));
+    }
+}
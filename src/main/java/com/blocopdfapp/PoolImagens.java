@@ -0,0 +1,71 @@
+package com.blocopdfapp;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Pool de ImagemPagina agrupadas por tamanho (largura x altura).
+ * Renderizar de novo uma página do mesmo tamanho reaproveita um buffer livre em vez
+ * de alocar outro. Os buffers livres são limitados em bytes; o excedente fica para o GC.
+ */
+public class PoolImagens {
+
+    private final Map<Long, ArrayDeque<ImagemPagina>> livres = new HashMap<>();
+    private final long limiteBytesLivres;
+    private long bytesLivres = 0;
+
+    /**
+     * Construtor - define quantos bytes de buffers livres podem ser mantidos
+     */
+    public PoolImagens(long limiteBytesLivres) {
+        this.limiteBytesLivres = limiteBytesLivres;
+    }
+
+    /**
+     * Obtém uma imagem do tamanho pedido, reaproveitando um buffer livre se houver
+     */
+    public ImagemPagina obter(int largura, int altura) {
+        ImagemPagina imagem = null;
+        synchronized (this) {
+            ArrayDeque<ImagemPagina> fila = livres.get(chave(largura, altura));
+            if (fila != null && !fila.isEmpty()) {
+                imagem = fila.pop();
+                bytesLivres -= tamanhoEmBytes(largura, altura);
+            }
+        }
+        if (imagem == null) {
+            imagem = ImagemPagina.criar(largura, altura, this);
+        }
+        imagem.reiniciar();
+        return imagem;
+    }
+
+    /**
+     * Devolve uma imagem que não está mais em uso
+     */
+    synchronized void devolver(ImagemPagina imagem) {
+        int largura = (int) imagem.getWidth();
+        int altura = (int) imagem.getHeight();
+        long tamanho = tamanhoEmBytes(largura, altura);
+        if (bytesLivres + tamanho > limiteBytesLivres) return;  // Pool cheio: deixa para o GC
+        livres.computeIfAbsent(chave(largura, altura), k -> new ArrayDeque<>()).push(imagem);
+        bytesLivres += tamanho;
+    }
+
+    /**
+     * Descarta todos os buffers livres
+     */
+    public synchronized void clear() {
+        livres.clear();
+        bytesLivres = 0;
+    }
+
+    private static long chave(int largura, int altura) {
+        return ((long) largura << 32) | (altura & 0xFFFFFFFFL);
+    }
+
+    private static long tamanhoEmBytes(int largura, int altura) {
+        return (long) largura * (long) altura * 4L;
+    }
+}
@@ -0,0 +1,81 @@
+package com.blocopdfapp;
+
+import org.apache.fontbox.ttf.OpenTypeFont;
+import org.apache.fontbox.ttf.TTFParser;
+import org.apache.fontbox.ttf.TrueTypeFont;
+import org.apache.pdfbox.pdmodel.font.FontMapping;
+import org.apache.pdfbox.pdmodel.font.FontMappers;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Fontes TrueType do sistema usadas na exportação para PDF, localizadas e lidas uma única
+ * vez por processo. A busca usa o mapeador de fontes do PDFBox, que guarda a lista de
+ * fontes instaladas em cache no disco. A instância do mapeador é compartilhada com o
+ * renderizador de PDF (que a usa para substituir fontes não embutidas) e TrueTypeFont não é
+ * thread-safe, então a exportação usa uma cópia própria, lida de novo do arquivo da fonte.
+ * A cópia é reaproveitada pelas exportações seguintes, que são feitas uma de cada vez
+ * (cada documento embute apenas um subconjunto dela).
+ */
+final class RegistroFontes {
+
+    // Chave "família|negrito|itálico"; vazio = fonte não instalada (usa-se a fonte padrão do PDF)
+    private static final Map<String, Optional<TrueTypeFont>> fontes = new ConcurrentHashMap<>();
+
+    private RegistroFontes() {
+    }
+
+    /**
+     * Fonte TrueType instalada para a família e o estilo, ou null se não houver
+     */
+    static TrueTypeFont truetype(String familia, boolean negrito, boolean italico) {
+        if (familia == null) return null;
+        String chave = familia + "|" + negrito + "|" + italico;
+        return fontes.computeIfAbsent(chave, c -> localizar(nomePostScript(familia, negrito, italico))).orElse(null);
+    }
+
+    private static Optional<TrueTypeFont> localizar(String nome) {
+        FontMapping<TrueTypeFont> mapeamento = FontMappers.instance().getTrueTypeFont(nome, null);
+        if (mapeamento == null || mapeamento.isFallback()) return Optional.empty();
+        TrueTypeFont fonte;
+        // getOriginalData abre o arquivo da fonte de novo, sem tocar no estado da instância compartilhada
+        try (InputStream arquivo = mapeamento.getFont().getOriginalData()) {
+            fonte = new TTFParser().parse(arquivo);
+        } catch (IOException e) {
+            return Optional.empty();  // Ex.: coleções .ttc, que não são lidas como uma fonte só
+        }
+        try {
+            // Fontes OpenType com contornos CFF não podem ser embutidas como TrueType
+            if (fonte instanceof OpenTypeFont && ((OpenTypeFont) fonte).isPostScript()) return Optional.empty();
+            if (fonte.getUnicodeCmapLookup(false) == null) return Optional.empty();
+        } catch (IOException e) {
+            return Optional.empty();
+        }
+        return Optional.of(fonte);
+    }
+
+    /**
+     * Nome PostScript da variante, como aparece nas fontes do Windows e do macOS
+     */
+    static String nomePostScript(String familia, boolean negrito, boolean italico) {
+        switch (familia) {
+            case "Times New Roman":
+                if (negrito) return italico ? "TimesNewRomanPS-BoldItalicMT" : "TimesNewRomanPS-BoldMT";
+                return italico ? "TimesNewRomanPS-ItalicMT" : "TimesNewRomanPSMT";
+            case "Arial":
+                if (negrito) return italico ? "Arial-BoldItalicMT" : "Arial-BoldMT";
+                return italico ? "Arial-ItalicMT" : "ArialMT";
+            case "Helvetica":
+                if (negrito) return italico ? "Helvetica-BoldOblique" : "Helvetica-Bold";
+                return italico ? "Helvetica-Oblique" : "Helvetica";
+            default:
+                String base = familia.replace(" ", "");
+                if (negrito) return base + (italico ? "-BoldItalic" : "-Bold");
+                return italico ? base + "-Italic" : base;
+        }
+    }
+}
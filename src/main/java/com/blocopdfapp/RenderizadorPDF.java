@@ -0,0 +1,452 @@
+package com.blocopdfapp;
+
+import javafx.application.Platform;
+import javafx.scene.image.Image;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.rendering.ImageType;
+import org.apache.pdfbox.rendering.PDFRenderer;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+/**
+ * Executa a renderização das páginas PDF fora da JavaFX Application Thread.
+ * Usa uma única thread de fundo, pois o PDDocument do PDFBox não é thread-safe,
+ * e entrega a imagem pronta via Platform.runLater. Cada novo pedido invalida o
+ * anterior, de modo que apenas o último par página/zoom é exibido.
+ * Pedidos de antecipação (prefetch) só rodam quando não há página pedida pelo usuário na fila.
+ * A renderização pedida pelo usuário é progressiva: primeiro uma prévia em baixa resolução,
+ * que aparece quase instantaneamente (rasterizada sem canal alfa, ImageType.RGB), e depois
+ * a imagem definitiva.
+ * As páginas são desenhadas diretamente em buffers de um PoolImagens, compartilhados
+ * com o JavaFX, sem cópia de pixels e sem alocação quando o tamanho se repete.
+ * Com um CacheDisco configurado, páginas e miniaturas de documentos já vistos são
+ * lidas do disco em vez de rasterizadas, e as novas são gravadas para a próxima vez.
+ */
+public class RenderizadorPDF {
+
+    // Prioridades da fila (menor valor = executa primeiro)
+    private static final int PRIORIDADE_PAGINA = 0;
+    private static final int PRIORIDADE_MINIATURA_VISIVEL = 5;
+    private static final int PRIORIDADE_ANTECIPACAO = 10;
+    private static final int PRIORIDADE_FUNDO = 20;
+
+    // Fração da escala usada na prévia (1/4 da resolução = 1/16 dos pixels)
+    private static final float FRACAO_PREVIA = 0.25f;
+
+    // Buffers livres mantidos para reaproveitamento
+    private static final long LIMITE_POOL_BYTES = 64L * 1024 * 1024;
+
+    private final ThreadPoolExecutor executor;
+    private final AtomicLong geracao = new AtomicLong();
+    private final AtomicLong geracaoAntecipacao = new AtomicLong();
+    private final AtomicLong geracaoDocumento = new AtomicLong();
+    private final AtomicLong sequencia = new AtomicLong();
+    private TarefaRenderizacao tarefaAtual;
+    private final PoolImagens pool = new PoolImagens(LIMITE_POOL_BYTES);
+
+    // Renderer do documento atual (usado apenas pela thread de renderização)
+    private PDDocument documentoRenderer;
+    private PDFRenderer renderer;
+
+    // Cache em disco e hash do documento que ele identifica (usados apenas pela thread de renderização)
+    private volatile CacheDisco cacheDisco;
+    private PDDocument documentoHash;
+    private String hashDocumento;
+
+    /**
+     * Tarefa ordenada por prioridade e, dentro da mesma prioridade, por ordem de chegada
+     */
+    private static class TarefaRenderizacao extends FutureTask<Void> implements Comparable<TarefaRenderizacao> {
+        private final int prioridade;
+        private final long ordem;
+
+        TarefaRenderizacao(Runnable tarefa, int prioridade, long ordem) {
+            super(tarefa, null);
+            this.prioridade = prioridade;
+            this.ordem = ordem;
+        }
+
+        @Override
+        public int compareTo(TarefaRenderizacao outra) {
+            if (prioridade != outra.prioridade) return Integer.compare(prioridade, outra.prioridade);
+            return Long.compare(ordem, outra.ordem);
+        }
+    }
+
+    /**
+     * Construtor - cria o executor de renderização com fila de prioridades
+     */
+    public RenderizadorPDF() {
+        executor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                new PriorityBlockingQueue<>(),
+                r -> {
+                    Thread thread = new Thread(r, "renderizador-pdf");
+                    thread.setDaemon(true);  // Não impede o encerramento da aplicação
+                    return thread;
+                });
+    }
+
+    /**
+     * Solicita a renderização de uma página, cancelando o pedido anterior.
+     * A prévia em baixa resolução é entregue em aoPrevia e a imagem definitiva em aoConcluir.
+     * Os callbacks são sempre chamados na JavaFX Application Thread; a imagem definitiva
+     * deve ser guardada no cache (que passa a controlar seu descarte).
+     */
+    public void renderizar(PDDocument documento, int pagina, float escala, Consumer<Image> aoPrevia,
+                           Consumer<Image> aoConcluir, Consumer<Exception> aoFalhar) {
+        long minhaGeracao = cancelar();
+        BooleanSupplier valido = () -> geracao.get() == minhaGeracao;
+        tarefaAtual = enfileirar(() -> {
+            if (!valido.getAsBoolean()) return;  // Pedido já obsoleto
+            try {
+                ImagemPagina doDisco = lerDoDisco(documento, pagina, escala);
+                if (doDisco != null) {  // Já vista numa sessão anterior: dispensa a prévia
+                    entregar(doDisco, valido, aoConcluir, false);
+                    return;
+                }
+                entregar(renderizarPrevia(documento, pagina, escala * FRACAO_PREVIA), valido, aoPrevia, true);
+                if (!valido.getAsBoolean()) return;
+                entregar(renderizarEGravar(documento, pagina, escala), valido, aoConcluir, false);
+            } catch (Exception e) {
+                Platform.runLater(() -> {
+                    if (valido.getAsBoolean()) aoFalhar.accept(e);
+                });
+            }
+        }, PRIORIDADE_PAGINA);
+    }
+
+    /**
+     * Renderiza uma página de forma independente dos demais pedidos (ex.: células do modo contínuo).
+     * Retorna o Future para que o chamador possa cancelar o pedido quando a página sair da tela.
+     * Também é progressivo, e os callbacks são chamados na JavaFX Application Thread.
+     */
+    public Future<?> renderizarIndependente(PDDocument documento, int pagina, float escala,
+                                            Consumer<Image> aoPrevia, Consumer<Image> aoConcluir) {
+        long minhaGeracao = geracaoDocumento.get();
+        BooleanSupplier valido = () -> geracaoDocumento.get() == minhaGeracao;
+        TarefaRenderizacao[] tarefa = new TarefaRenderizacao[1];
+        tarefa[0] = new TarefaRenderizacao(() -> {
+            if (!valido.getAsBoolean()) return;
+            try {
+                ImagemPagina doDisco = lerDoDisco(documento, pagina, escala);
+                if (doDisco != null) {
+                    entregar(doDisco, valido, aoConcluir, false);
+                    return;
+                }
+                entregar(renderizarPrevia(documento, pagina, escala * FRACAO_PREVIA), valido, aoPrevia, true);
+                if (tarefa[0].isCancelled()) return;  // A célula saiu da tela durante a prévia
+                entregar(renderizarEGravar(documento, pagina, escala), valido, aoConcluir, false);
+            } catch (Exception e) {
+                // A célula continua com o espaço reservado; um novo pedido será feito ao rolar
+            }
+        }, PRIORIDADE_PAGINA, sequencia.incrementAndGet());
+        executor.execute(tarefa[0]);
+        return tarefa[0];
+    }
+
+    /**
+     * Renderiza apenas uma região retangular da página (um bloco), em pixels na escala informada.
+     * Usado em zoom alto, para não alocar a página inteira de uma vez.
+     * O callback é chamado na JavaFX Application Thread.
+     */
+    public Future<?> renderizarBloco(PDDocument documento, int pagina, float escala,
+                                     int x, int y, int largura, int altura, Consumer<Image> aoConcluir) {
+        long minhaGeracao = geracaoDocumento.get();
+        BooleanSupplier valido = () -> geracaoDocumento.get() == minhaGeracao;
+        return enfileirar(() -> {
+            if (!valido.getAsBoolean()) return;
+            ImagemPagina bloco = pool.obter(largura, altura);
+            Graphics2D g = bloco.iniciarDesenho();
+            try {
+                g.clipRect(0, 0, largura, altura);  // O PDFBox não desenha (nem rasteriza) fora do recorte
+                g.translate(-x, -y);                // Desloca a página para que só o bloco caia na imagem
+                rendererPara(documento).renderPageToGraphics(pagina, g, escala);
+                entregar(bloco, valido, aoConcluir, false);
+            } catch (Exception e) {
+                // O bloco fica em branco; será pedido novamente quando voltar à área visível
+                bloco.descartar();
+                bloco.liberar();
+            } finally {
+                g.dispose();
+            }
+        }, PRIORIDADE_PAGINA);
+    }
+
+    /**
+     * Renderiza a miniatura de uma página em baixa resolução. Miniaturas visíveis têm
+     * prioridade sobre a antecipação de páginas; as demais (geração em lote) só rodam
+     * quando a fila estiver vazia. O callback é chamado na JavaFX Application Thread,
+     * com null se a página não puder ser renderizada.
+     */
+    public Future<?> renderizarMiniatura(PDDocument documento, int pagina, float escala, boolean visivel,
+                                         Consumer<Image> aoConcluir) {
+        long minhaGeracao = geracaoDocumento.get();
+        BooleanSupplier valido = () -> geracaoDocumento.get() == minhaGeracao;
+        return enfileirar(() -> {
+            if (!valido.getAsBoolean()) return;
+            try {
+                entregar(lerOuRenderizar(documento, pagina, escala), valido, aoConcluir, false);
+            } catch (Exception e) {
+                // A miniatura fica em branco; a página continua acessível pelo clique
+                Platform.runLater(() -> {
+                    if (valido.getAsBoolean()) aoConcluir.accept(null);
+                });
+            }
+        }, visivel ? PRIORIDADE_MINIATURA_VISIVEL : PRIORIDADE_FUNDO);
+    }
+
+    /**
+     * Renderiza antecipadamente uma página com baixa prioridade.
+     * O callback (ex.: para guardar no cache) é chamado na JavaFX Application Thread,
+     * e o pedido é descartado se o usuário pedir outra página antes de ele começar.
+     */
+    public void antecipar(PDDocument documento, int pagina, float escala, Consumer<Image> aoConcluir) {
+        long minhaGeracao = geracaoAntecipacao.get();
+        BooleanSupplier valido = () -> geracaoAntecipacao.get() == minhaGeracao;
+        enfileirar(() -> {
+            if (!valido.getAsBoolean()) return;
+            Thread thread = Thread.currentThread();
+            thread.setPriority(Thread.MIN_PRIORITY);
+            try {
+                entregar(lerOuRenderizar(documento, pagina, escala), valido, aoConcluir, false);
+            } catch (Exception e) {
+                // A antecipação é opcional: a página será renderizada normalmente quando pedida
+            } finally {
+                thread.setPriority(Thread.NORM_PRIORITY);
+            }
+        }, PRIORIDADE_ANTECIPACAO);
+    }
+
+    /**
+     * Executa uma tarefa na thread de renderização, após os pedidos já enfileirados.
+     * Útil para fechar o documento sem concorrer com uma renderização em andamento.
+     */
+    public void executar(Runnable tarefa) {
+        enfileirar(tarefa, PRIORIDADE_PAGINA);
+    }
+
+    /**
+     * Executa uma tarefa na thread de renderização somente quando não houver
+     * renderizações nem antecipações na fila (ex.: processamento do documento inteiro)
+     */
+    public void executarEmSegundoPlano(Runnable tarefa) {
+        enfileirar(tarefa, PRIORIDADE_FUNDO);
+    }
+
+    /**
+     * Define o cache em disco (null desativa)
+     */
+    public void setCacheDisco(CacheDisco cacheDisco) {
+        this.cacheDisco = cacheDisco;
+    }
+
+    /**
+     * Associa o documento ao hash do conteúdo do arquivo, que identifica suas entradas
+     * no cache em disco. Pode ser chamado logo após abrir o documento, antes dos pedidos de renderização.
+     */
+    public void identificarDocumento(PDDocument documento, String hash) {
+        executar(() -> {
+            documentoHash = documento;
+            hashDocumento = hash;
+        });
+    }
+
+    /**
+     * Fecha o documento na thread de renderização, depois de qualquer renderização em andamento
+     */
+    public void fecharDocumento(PDDocument documento) {
+        executar(() -> {
+            if (documentoRenderer == documento) {
+                documentoRenderer = null;
+                renderer = null;
+            }
+            if (documentoHash == documento) {
+                documentoHash = null;
+                hashDocumento = null;
+            }
+            try {
+                documento.close();
+            } catch (IOException e) {
+                // Ignora erros ao fechar
+            }
+        });
+    }
+
+    /**
+     * Invalida o pedido atual (e as antecipações pendentes) e retorna a nova geração
+     */
+    public long cancelar() {
+        long novaGeracao = geracao.incrementAndGet();
+        cancelarAntecipacao();
+        if (tarefaAtual != null) {
+            tarefaAtual.cancel(false);
+            tarefaAtual = null;
+        }
+        executor.purge();  // Remove da fila os pedidos cancelados
+        return novaGeracao;
+    }
+
+    /**
+     * Invalida todos os pedidos, inclusive os independentes (usado ao fechar o documento)
+     */
+    public void cancelarTudo() {
+        geracaoDocumento.incrementAndGet();
+        cancelar();
+    }
+
+    /**
+     * Descarta as antecipações que ainda não começaram
+     */
+    public void cancelarAntecipacao() {
+        geracaoAntecipacao.incrementAndGet();
+    }
+
+    /**
+     * Encerra a thread de renderização
+     */
+    public void encerrar() {
+        cancelarTudo();
+        executor.shutdown();
+        pool.clear();
+        if (cacheDisco != null) cacheDisco.encerrar();
+    }
+
+    /**
+     * Rasteriza a página inteira num buffer do pool (executado na thread de renderização).
+     * O tamanho em pixels segue a mesma regra do PDFRenderer.renderImage.
+     */
+    private ImagemPagina renderizarImagem(PDDocument documento, int pagina, float escala) throws IOException {
+        float[] tamanho = tamanhoPagina(documento.getPage(pagina));
+        int largura = tamanhoPixels(tamanho[0], escala);
+        int altura = tamanhoPixels(tamanho[1], escala);
+
+        ImagemPagina imagem = pool.obter(largura, altura);
+        Graphics2D g = imagem.iniciarDesenho();
+        try {
+            rendererPara(documento).renderPageToGraphics(pagina, g, escala);
+        } catch (IOException | RuntimeException e) {
+            imagem.descartar();
+            imagem.liberar();
+            throw e;
+        } finally {
+            g.dispose();
+        }
+        return imagem;
+    }
+
+    /**
+     * Rasteriza a prévia em ImageType.RGB, mais barato que com canal alfa, e a copia para um
+     * buffer do pool (a prévia tem 1/16 dos pixels da página, então a cópia é pequena)
+     */
+    private ImagemPagina renderizarPrevia(PDDocument documento, int pagina, float escala) throws IOException {
+        BufferedImage rgb = rendererPara(documento).renderImage(pagina, escala, ImageType.RGB);
+        ImagemPagina imagem = pool.obter(rgb.getWidth(), rgb.getHeight());
+        Graphics2D g = imagem.iniciarDesenho();
+        try {
+            g.drawImage(rgb, 0, 0, null);
+        } finally {
+            g.dispose();
+        }
+        return imagem;
+    }
+
+    /**
+     * Lê a imagem do cache em disco, se existir, ou rasteriza e grava a página
+     */
+    private ImagemPagina lerOuRenderizar(PDDocument documento, int pagina, float escala) throws IOException {
+        ImagemPagina doDisco = lerDoDisco(documento, pagina, escala);
+        return doDisco != null ? doDisco : renderizarEGravar(documento, pagina, escala);
+    }
+
+    /**
+     * Lê a página do cache em disco num buffer do pool, ou retorna null se não houver entrada
+     */
+    private ImagemPagina lerDoDisco(PDDocument documento, int pagina, float escala) {
+        CacheDisco disco = cacheDisco;
+        if (disco == null || documento != documentoHash) return null;
+        float[] tamanho = tamanhoPagina(documento.getPage(pagina));
+        ImagemPagina imagem = pool.obter(tamanhoPixels(tamanho[0], escala), tamanhoPixels(tamanho[1], escala));
+        if (disco.ler(hashDocumento, pagina, escala, imagem)) return imagem;
+        imagem.descartar();
+        imagem.liberar();
+        return null;
+    }
+
+    /**
+     * Rasteriza a página e a grava no cache em disco, quando ativo
+     */
+    private ImagemPagina renderizarEGravar(PDDocument documento, int pagina, float escala) throws IOException {
+        ImagemPagina imagem = renderizarImagem(documento, pagina, escala);
+        CacheDisco disco = cacheDisco;
+        if (disco != null && documento == documentoHash) {
+            disco.gravar(hashDocumento, pagina, escala, imagem);
+        }
+        return imagem;
+    }
+
+    private static int tamanhoPixels(float pontos, float escala) {
+        return (int) Math.max(Math.floor(pontos * escala), 1);
+    }
+
+    /**
+     * Largura e altura da página em pontos, considerando a rotação.
+     * Usa a CropBox, que é a área efetivamente rasterizada pelo PDFRenderer.
+     */
+    public static float[] tamanhoPagina(PDPage page) {
+        PDRectangle caixa = page.getCropBox();
+        boolean deitada = page.getRotation() % 180 != 0;
+        return deitada ? new float[] {caixa.getHeight(), caixa.getWidth()}
+                       : new float[] {caixa.getWidth(), caixa.getHeight()};
+    }
+
+    /**
+     * Publica a imagem na JavaFX Application Thread e a entrega ao callback, se o pedido
+     * ainda for válido. Imagens não entregues, ou que não vão para o cache (descartarApos),
+     * voltam ao pool assim que deixarem de ser exibidas.
+     */
+    private void entregar(ImagemPagina imagem, BooleanSupplier valido, Consumer<Image> callback,
+                          boolean descartarApos) {
+        Platform.runLater(() -> {
+            try {
+                if (valido.getAsBoolean()) {
+                    imagem.publicar();
+                    callback.accept(imagem);
+                    if (descartarApos) imagem.descartar();
+                } else {
+                    imagem.descartar();
+                }
+            } finally {
+                imagem.liberar();  // Uso inicial, obtido do pool na thread de renderização
+            }
+        });
+    }
+
+    /**
+     * Retorna o PDFRenderer do documento, criando-o quando o documento muda
+     */
+    private PDFRenderer rendererPara(PDDocument documento) {
+        if (documento != documentoRenderer) {
+            documentoRenderer = documento;
+            renderer = new PDFRenderer(documento);
+        }
+        return renderer;
+    }
+
+    private TarefaRenderizacao enfileirar(Runnable tarefa, int prioridade) {
+        TarefaRenderizacao tarefaRenderizacao = new TarefaRenderizacao(tarefa, prioridade, sequencia.incrementAndGet());
+        executor.execute(tarefaRenderizacao);
+        return tarefaRenderizacao;
+    }
+}
@@ -0,0 +1,174 @@
+package com.blocopdfapp;
+
+import javafx.geometry.Bounds;
+import javafx.scene.Node;
+import javafx.scene.image.Image;
+import javafx.scene.image.ImageView;
+import javafx.scene.layout.Pane;
+import org.apache.pdfbox.pdmodel.PDDocument;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Future;
+
+/**
+ * Exibição de uma página em blocos (tiles) de tamanho fixo, usada em zoom alto.
+ * Apenas os blocos na área visível do ScrollPane (mais uma margem de um bloco) são
+ * rasterizados e mantidos na tela; os demais são removidos ao rolar. Cada bloco é
+ * guardado individualmente no cache de páginas, então o pico de memória acompanha
+ * o tamanho da janela e não a área da página multiplicada pelo zoom ao quadrado.
+ */
+public class VisualizacaoBlocos {
+
+    public static final int TAMANHO_BLOCO = 512;
+
+    private final RenderizadorPDF renderizador;
+    private final CachePaginas cachePaginas;
+    private final Pane camada = new Pane();
+
+    // Blocos atualmente na tela e pedidos pendentes, indexados por coluna/linha
+    private final Map<Long, ImageView> blocosExibidos = new HashMap<>();
+    private final Map<Long, Future<?>> pedidos = new HashMap<>();
+
+    private PDDocument documento;
+    private long documentoId;
+    private int pagina = -1;
+    private float escala;
+    private int larguraPixels;
+    private int alturaPixels;
+
+    /**
+     * Construtor - compartilha o renderizador e o cache do visualizador
+     */
+    public VisualizacaoBlocos(RenderizadorPDF renderizador, CachePaginas cachePaginas) {
+        this.renderizador = renderizador;
+        this.cachePaginas = cachePaginas;
+        camada.setStyle("-fx-background-color: white;");
+    }
+
+    /**
+     * Prepara a camada para a página e a escala informadas (sem renderizar nada ainda)
+     */
+    public Node exibir(PDDocument documento, long documentoId, int pagina,
+                       float larguraPontos, float alturaPontos, float escala) {
+        limpar();
+        this.documento = documento;
+        this.documentoId = documentoId;
+        this.pagina = pagina;
+        this.escala = escala;
+        larguraPixels = (int) Math.ceil(larguraPontos * escala);
+        alturaPixels = (int) Math.ceil(alturaPontos * escala);
+        camada.setMinSize(larguraPixels, alturaPixels);
+        camada.setPrefSize(larguraPixels, alturaPixels);
+        camada.setMaxSize(larguraPixels, alturaPixels);
+        return camada;
+    }
+
+    /**
+     * Atualiza os blocos de acordo com a região visível, em coordenadas da camada
+     */
+    public void atualizar(Bounds visivel) {
+        if (pagina < 0) return;
+        int colunas = (larguraPixels + TAMANHO_BLOCO - 1) / TAMANHO_BLOCO;
+        int linhas = (alturaPixels + TAMANHO_BLOCO - 1) / TAMANHO_BLOCO;
+
+        // Intervalo de blocos visíveis, com margem de um bloco para a rolagem
+        int colunaInicial = Math.max(0, (int) Math.floor(visivel.getMinX() / TAMANHO_BLOCO) - 1);
+        int colunaFinal = Math.min(colunas - 1, (int) Math.floor(visivel.getMaxX() / TAMANHO_BLOCO) + 1);
+        int linhaInicial = Math.max(0, (int) Math.floor(visivel.getMinY() / TAMANHO_BLOCO) - 1);
+        int linhaFinal = Math.min(linhas - 1, (int) Math.floor(visivel.getMaxY() / TAMANHO_BLOCO) + 1);
+
+        // Remove os blocos que saíram da região
+        Iterator<Map.Entry<Long, ImageView>> itBlocos = blocosExibidos.entrySet().iterator();
+        while (itBlocos.hasNext()) {
+            Map.Entry<Long, ImageView> bloco = itBlocos.next();
+            if (!dentro(bloco.getKey(), colunaInicial, colunaFinal, linhaInicial, linhaFinal)) {
+                camada.getChildren().remove(bloco.getValue());
+                ImagemPagina.exibir(bloco.getValue(), null);
+                itBlocos.remove();
+            }
+        }
+        Iterator<Map.Entry<Long, Future<?>>> itPedidos = pedidos.entrySet().iterator();
+        while (itPedidos.hasNext()) {
+            Map.Entry<Long, Future<?>> pedido = itPedidos.next();
+            if (!dentro(pedido.getKey(), colunaInicial, colunaFinal, linhaInicial, linhaFinal)) {
+                pedido.getValue().cancel(false);
+                itPedidos.remove();
+            }
+        }
+
+        // Pede os blocos que faltam, começando pelos mais próximos do centro da região visível
+        List<int[]> faltando = new ArrayList<>();
+        for (int linha = linhaInicial; linha <= linhaFinal; linha++) {
+            for (int coluna = colunaInicial; coluna <= colunaFinal; coluna++) {
+                long id = idBloco(coluna, linha);
+                if (!blocosExibidos.containsKey(id) && !pedidos.containsKey(id)) {
+                    faltando.add(new int[] {coluna, linha});
+                }
+            }
+        }
+        double centroX = (visivel.getMinX() + visivel.getMaxX()) / 2;
+        double centroY = (visivel.getMinY() + visivel.getMaxY()) / 2;
+        faltando.sort(Comparator.comparingDouble(b -> Math.hypot(
+                (b[0] + 0.5) * TAMANHO_BLOCO - centroX, (b[1] + 0.5) * TAMANHO_BLOCO - centroY)));
+        for (int[] bloco : faltando) {
+            carregarBloco(bloco[0], bloco[1]);
+        }
+    }
+
+    /**
+     * Remove todos os blocos e cancela os pedidos pendentes
+     */
+    public void limpar() {
+        pedidos.values().forEach(pedido -> pedido.cancel(false));
+        pedidos.clear();
+        blocosExibidos.values().forEach(bloco -> ImagemPagina.exibir(bloco, null));
+        blocosExibidos.clear();
+        camada.getChildren().clear();
+        pagina = -1;
+    }
+
+    private void carregarBloco(int coluna, int linha) {
+        long id = idBloco(coluna, linha);
+        CachePaginas.Chave chave = new CachePaginas.Chave(documentoId, pagina, escala, coluna, linha);
+        Image emCache = cachePaginas.get(chave);
+        if (emCache != null) {
+            adicionarBloco(id, coluna, linha, emCache);
+            return;
+        }
+        int x = coluna * TAMANHO_BLOCO;
+        int y = linha * TAMANHO_BLOCO;
+        int largura = Math.min(TAMANHO_BLOCO, larguraPixels - x);
+        int altura = Math.min(TAMANHO_BLOCO, alturaPixels - y);
+        int paginaPedida = pagina;
+        float escalaPedida = escala;
+        pedidos.put(id, renderizador.renderizarBloco(documento, pagina, escala, x, y, largura, altura, imagem -> {
+            cachePaginas.put(chave, imagem);
+            if (pagina == paginaPedida && escala == escalaPedida && pedidos.remove(id) != null) {
+                adicionarBloco(id, coluna, linha, imagem);
+            }
+        }));
+    }
+
+    private void adicionarBloco(long id, int coluna, int linha, Image imagem) {
+        ImageView bloco = new ImageView();
+        ImagemPagina.exibir(bloco, imagem);
+        bloco.relocate(coluna * TAMANHO_BLOCO, linha * TAMANHO_BLOCO);
+        blocosExibidos.put(id, bloco);
+        camada.getChildren().add(bloco);
+    }
+
+    private static boolean dentro(long id, int colunaInicial, int colunaFinal, int linhaInicial, int linhaFinal) {
+        int coluna = (int) (id >> 32);
+        int linha = (int) id;
+        return coluna >= colunaInicial && coluna <= colunaFinal && linha >= linhaInicial && linha <= linhaFinal;
+    }
+
+    private static long idBloco(int coluna, int linha) {
+        return ((long) coluna << 32) | (linha & 0xFFFFFFFFL);
+    }
+}
@@ -0,0 +1,223 @@
+package com.blocopdfapp;
+
+import javafx.collections.ListChangeListener;
+import javafx.collections.ObservableList;
+import javafx.geometry.Insets;
+import javafx.geometry.Pos;
+import javafx.scene.Node;
+import javafx.scene.image.Image;
+import javafx.scene.image.ImageView;
+import javafx.scene.layout.StackPane;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.fxmisc.flowless.Cell;
+import org.fxmisc.flowless.VirtualFlow;
+import org.fxmisc.flowless.VirtualizedScrollPane;
+
+import java.util.concurrent.Future;
+import java.util.function.IntConsumer;
+import java.util.function.IntFunction;
+
+/**
+ * Modo de rolagem contínua do visualizador PDF.
+ * Todas as páginas são dispostas com o tamanho correto (calculado a partir das
+ * dimensões da página, sem renderizá-las), mas apenas as células visíveis existem
+ * e são rasterizadas. As células que saem da tela são recicladas e liberam a imagem,
+ * então o uso de memória não depende do número de páginas do documento.
+ */
+public class VisualizacaoContinua {
+
+    private static final double ESPACO_ENTRE_PAGINAS = 5;
+
+    private final RenderizadorPDF renderizador;
+    private final CachePaginas cachePaginas;
+    private final StackPane container = new StackPane();
+
+    private VirtualFlow<Integer, CelulaPagina> fluxo;
+    private PDDocument documento;
+    private long documentoId;
+    private float[] larguras;
+    private float[] alturas;
+    private float escala;
+    private IntConsumer onPaginaVisivel;
+    private IntFunction<float[][]> destaques;   // Ocorrências da busca por página: {demais, atual}
+
+    /**
+     * Célula reciclável que exibe uma página
+     */
+    private class CelulaPagina implements Cell<Integer, StackPane> {
+        private final StackPane node = new StackPane();
+        private final StackPane folha = new StackPane();
+        private final ImageView imageView = new ImageView();
+        private final CamadaDestaques camada = new CamadaDestaques();
+        private Future<?> pedido;
+        private int pagina = -1;
+
+        CelulaPagina(int pagina) {
+            folha.setStyle("-fx-background-color: white; -fx-effect: dropshadow(gaussian, #999999, 4, 0, 0, 1);");
+            folha.setAlignment(Pos.TOP_LEFT);
+            folha.getChildren().addAll(imageView, camada);
+            node.setPadding(new Insets(ESPACO_ENTRE_PAGINAS));
+            node.setAlignment(Pos.CENTER);
+            node.getChildren().add(folha);
+            updateItem(pagina);
+        }
+
+        @Override public StackPane getNode() { return node; }
+        @Override public boolean isReusable() { return true; }
+
+        @Override
+        public void updateItem(Integer novaPagina) {
+            cancelarPedido();
+            pagina = novaPagina;
+
+            // Reserva o espaço da página antes de ela ser renderizada
+            double largura = larguras[pagina] * escala;
+            double altura = alturas[pagina] * escala;
+            folha.setMinSize(largura, altura);
+            folha.setPrefSize(largura, altura);
+            folha.setMaxSize(largura, altura);
+            imageView.setFitWidth(largura);
+            imageView.setFitHeight(altura);
+            atualizarDestaques();
+
+            CachePaginas.Chave chave = new CachePaginas.Chave(documentoId, pagina, escala);
+            Image emCache = cachePaginas.get(chave);
+            if (emCache != null) {
+                ImagemPagina.exibir(imageView, emCache);
+                return;
+            }
+            ImagemPagina.exibir(imageView, null);
+            int paginaPedida = pagina;
+            pedido = renderizador.renderizarIndependente(documento, paginaPedida, escala,
+                previa -> {
+                    if (pagina == paginaPedida && imageView.getImage() == null) ImagemPagina.exibir(imageView, previa);
+                },
+                imagem -> {
+                    cachePaginas.put(chave, imagem);
+                    if (pagina == paginaPedida) ImagemPagina.exibir(imageView, imagem);
+                });
+        }
+
+        @Override
+        public void reset() {
+            // Célula fora da tela: libera a imagem e o pedido pendente
+            cancelarPedido();
+            ImagemPagina.exibir(imageView, null);
+            camada.limpar();
+            pagina = -1;
+        }
+
+        void atualizarDestaques() {
+            float[][] paginaDestaques = destaques != null && pagina >= 0 ? destaques.apply(pagina) : null;
+            if (paginaDestaques == null) {
+                camada.limpar();
+            } else {
+                camada.exibir(paginaDestaques[0], paginaDestaques[1], escala);
+            }
+        }
+
+        @Override
+        public void dispose() {
+            reset();
+        }
+
+        private void cancelarPedido() {
+            if (pedido != null) {
+                pedido.cancel(false);
+                pedido = null;
+            }
+        }
+    }
+
+    /**
+     * Construtor - compartilha o renderizador e o cache do visualizador
+     */
+    public VisualizacaoContinua(RenderizadorPDF renderizador, CachePaginas cachePaginas) {
+        this.renderizador = renderizador;
+        this.cachePaginas = cachePaginas;
+        container.setStyle("-fx-background-color: #d0d0d0;");
+    }
+
+    /**
+     * Define o callback chamado quando a primeira página visível muda
+     */
+    public void setOnPaginaVisivel(IntConsumer onPaginaVisivel) { this.onPaginaVisivel = onPaginaVisivel; }
+
+    /**
+     * Define de onde vêm os destaques da busca de cada página
+     */
+    public void setDestaques(IntFunction<float[][]> destaques) { this.destaques = destaques; }
+
+    /**
+     * Redesenha os destaques das páginas visíveis (a busca mudou)
+     */
+    public void atualizarDestaques() {
+        if (fluxo == null) return;
+        for (CelulaPagina celula : fluxo.visibleCells()) celula.atualizarDestaques();
+    }
+
+    /**
+     * Monta a rolagem contínua para o documento e a escala informados
+     */
+    public void exibir(PDDocument documento, long documentoId, float[] larguras, float[] alturas,
+                       float escala, int paginaInicial) {
+        limpar();
+        this.documento = documento;
+        this.documentoId = documentoId;
+        this.larguras = larguras;
+        this.alturas = alturas;
+        this.escala = escala;
+
+        ObservableList<Integer> paginas = new IndicesPaginas(larguras.length);
+        fluxo = VirtualFlow.createVertical(paginas, CelulaPagina::new);
+        fluxo.visibleCells().addListener((ListChangeListener<CelulaPagina>) c -> paginaVisivelMudou());
+        container.getChildren().setAll(new VirtualizedScrollPane<>(fluxo));
+        irPara(paginaInicial);
+    }
+
+    /**
+     * Rola até a página indicada
+     */
+    public void irPara(int pagina) {
+        if (fluxo != null && pagina >= 0 && pagina < larguras.length) {
+            fluxo.showAsFirst(pagina);
+        }
+    }
+
+    /**
+     * Remove a rolagem atual, descartando as células e seus pedidos
+     */
+    public void limpar() {
+        if (fluxo != null) {
+            fluxo.dispose();
+            fluxo = null;
+        }
+        container.getChildren().clear();
+    }
+
+    /**
+     * Retorna o componente visual da rolagem contínua
+     */
+    public Node getView() {
+        return container;
+    }
+
+    private void paginaVisivelMudou() {
+        if (fluxo == null || fluxo.visibleCells().isEmpty()) return;
+        int primeira = fluxo.getFirstVisibleIndex();
+        if (onPaginaVisivel != null) onPaginaVisivel.accept(primeira);
+
+        // Pré-renderiza as páginas logo acima e logo abaixo da área visível
+        renderizador.cancelarAntecipacao();
+        anteciparPagina(fluxo.getLastVisibleIndex() + 1);
+        anteciparPagina(primeira - 1);
+    }
+
+    private void anteciparPagina(int pagina) {
+        if (pagina < 0 || pagina >= larguras.length) return;
+        CachePaginas.Chave chave = new CachePaginas.Chave(documentoId, pagina, escala);
+        if (!cachePaginas.contem(chave)) {
+            renderizador.antecipar(documento, pagina, escala, imagem -> cachePaginas.put(chave, imagem));
+        }
+    }
+}